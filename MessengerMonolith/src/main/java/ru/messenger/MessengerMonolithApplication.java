@@ -2,8 +2,10 @@ package ru.messenger;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MessengerMonolithApplication {
     public static void main(String[] args) {
         SpringApplication.run(MessengerMonolithApplication.class,args);
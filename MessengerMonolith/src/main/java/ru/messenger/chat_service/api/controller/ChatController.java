@@ -16,7 +16,6 @@ import ru.messenger.chat_service.domain.entity.enums.ChatType;
 import ru.messenger.chat_service.domain.entity.enums.MessageType;
 import ru.messenger.chat_service.domain.service.ChatService;
 import ru.messenger.user_service.api.dto.UserResponseDto;
-import ru.messenger.user_service.domain.entity.UserEntity;
 import ru.messenger.user_service.domain.repository.UserRepository;
 import ru.messenger.user_service.domain.service.UserService;
 
@@ -31,6 +30,9 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ChatController {
 
+    // Максимум пользователей в списке для нового чата
+    private static final int MAX_AVAILABLE_USERS = 200;
+
     private final ChatService chatService;
     private final UserService userService;
     private final UserRepository userRepository;
@@ -52,6 +54,24 @@ public class ChatController {
         return ResponseEntity.ok(chats);
     }
 
+    /**
+     * Список чатов с превью последнего сообщения и непрочитанными
+     * GET /api/v1/chats/list?limit=30&beforeUpdatedAt=...&beforeId=...
+     */
+    @GetMapping("/list")
+    public ResponseEntity<ChatListResponseDto> getChatList(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) Instant beforeUpdatedAt,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "30") int limit) {
+
+        String login = userDetails.getUsername();
+        var user = userService.getUserByLogin(login);
+
+        ChatListResponseDto chats = chatService.getChatList(user.getId(), beforeUpdatedAt, beforeId, limit);
+        return ResponseEntity.ok(chats);
+    }
+
     /**
      * Создать приватный чат
      */
@@ -211,6 +231,44 @@ public class ChatController {
         return ResponseEntity.ok(messages);
     }
 
+    /**
+     * История сообщений по курсору
+     * GET /api/v1/chats/{chatId}/messages/history?before={messageId}&limit=50
+     */
+    @GetMapping("/{chatId}/messages/history")
+    public ResponseEntity<MessageCursorResponseDto> getMessageHistory(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable Long chatId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int limit) {
+
+        String login = userDetails.getUsername();
+        var user = userService.getUserByLogin(login);
+
+        MessageCursorResponseDto messages = chatService.getMessageHistory(chatId, user.getId(), before, after, limit);
+        return ResponseEntity.ok(messages);
+    }
+
+    /**
+     * Поиск по сообщениям своих чатов
+     * GET /api/v1/chats/messages/search?q=...&chatId=...&page=0&size=20
+     */
+    @GetMapping("/messages/search")
+    public ResponseEntity<MessageSearchResponseDto> searchMessages(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam String q,
+            @RequestParam(required = false) Long chatId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        String login = userDetails.getUsername();
+        var user = userService.getUserByLogin(login);
+
+        MessageSearchResponseDto results = chatService.searchMessages(user.getId(), q, chatId, page, size);
+        return ResponseEntity.ok(results);
+    }
+
     /**
      * Отправить сообщение
      * POST /api/v1/chats/{chatId}/messages
@@ -274,23 +332,43 @@ public class ChatController {
      * GET /api/v1/chats/{chatId}/messages/new
      */
     @GetMapping("/{chatId}/messages/new")
-    public ResponseEntity<List<MessageResponseDto>> getNewMessages(
+    public ResponseEntity<MessageCursorResponseDto> getNewMessages(
             @AuthenticationPrincipal UserDetails userDetails,
             @PathVariable Long chatId,
-            @RequestParam(required = false) Instant since) {
+            @RequestParam(required = false) Instant since,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "100") int limit) {
 
-        if (since == null) {
+        if (since == null && afterId == null) {
             since = Instant.now().minusSeconds(60); // Последнюю минуту
         }
 
         String login = userDetails.getUsername();
         var user = userService.getUserByLogin(login);
 
-        List<MessageResponseDto> messages = chatService.getNewMessages(chatId, user.getId(), since);
+        MessageCursorResponseDto messages = chatService.getNewMessages(chatId, user.getId(), since, afterId, limit);
         return ResponseEntity.ok(messages);
     }
 
 
+    /**
+     * Пометить чат прочитанным до указанного сообщения
+     * POST /api/v1/chats/{chatId}/read
+     */
+    @PostMapping("/{chatId}/read")
+    public ResponseEntity<ReadWatermarkResponseDto> markChatAsRead(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable Long chatId,
+            @RequestBody(required = false) ReadUpToRequestDto requestDto) {
+
+        String login = userDetails.getUsername();
+        var user = userService.getUserByLogin(login);
+
+        Long upToMessageId = requestDto != null ? requestDto.getUpToMessageId() : null;
+        ReadWatermarkResponseDto watermark = chatService.markChatAsRead(chatId, user.getId(), upToMessageId);
+        return ResponseEntity.ok(watermark);
+    }
+
     @GetMapping("/{chatId}/check")
     public ResponseEntity<?> checkChatAccess(
             @AuthenticationPrincipal UserDetails userDetails,
@@ -310,23 +388,26 @@ public class ChatController {
 
     /**
      * Получить список доступных пользователей для чата
+     * GET /api/v1/chats/available-users?limit=100
      */
     @GetMapping("/available-users")
     public ResponseEntity<List<UserResponseDto>> getAvailableUsers(
-            @AuthenticationPrincipal UserDetails userDetails) {
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(defaultValue = "100") int limit) {
 
         String login = userDetails.getUsername();
         var currentUser = userService.getUserByLogin(login);
 
-        // Получаем всех пользователей кроме текущего
-        List<UserEntity> allUsers = userRepository.findAll();
-        List<UserResponseDto> availableUsers = allUsers.stream()
-                .filter(user -> !user.getId().equals(currentUser.getId()))
-                .map(user -> UserResponseDto.builder()
-                        .id(user.getId())
-                        .username(user.getUsername())
-                        .login(user.getLogin())
-                        .avatarUrl(user.getAvatarUrl())
+        // Только нужные поля и не больше лимита; для остальных есть поиск
+        int pageSize = Math.max(1, Math.min(limit, MAX_AVAILABLE_USERS));
+        List<UserResponseDto> availableUsers = userRepository
+                .findUserSummariesExcluding(currentUser.getId(), Pageable.ofSize(pageSize))
+                .stream()
+                .map(row -> UserResponseDto.builder()
+                        .id((Long) row[0])
+                        .login((String) row[1])
+                        .username((String) row[2])
+                        .avatarUrl((String) row[3])
                         .build())
                 .collect(Collectors.toList());
 
@@ -1,16 +1,21 @@
 package ru.messenger.chat_service.api.controller;
 
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 import ru.messenger.chat_service.api.dto.*;
+import ru.messenger.chat_service.domain.entity.enums.MessageType;
 import ru.messenger.chat_service.domain.service.ChatService;
-import ru.messenger.user_service.domain.service.UserService;
+import ru.messenger.chat_service.domain.service.MessageIngestPipeline;
+import ru.messenger.chat_service.domain.service.TypingAggregator;
+import ru.messenger.user_service.domain.service.UserIdentityCache;
 
 import java.security.Principal;
 import java.time.Instant;
@@ -23,7 +28,10 @@ public class WebSocketController {
 
     private final SimpMessagingTemplate messagingTemplate;
     private final ChatService chatService;
-    private final UserService userService;
+    private final MessageIngestPipeline messageIngestPipeline;
+    private final TypingAggregator typingAggregator;
+    private final UserIdentityCache userIdentityCache;
+    private final Validator validator;
 
     /**
      * Отправка сообщения через WebSocket
@@ -33,26 +41,57 @@ public class WebSocketController {
     @MessageMapping("/chat.sendMessage")
     public void sendMessage(
             @Payload MessageRequestDto requestDto,
-            Principal principal) {
+            Principal principal,
+            SimpMessageHeaderAccessor headerAccessor) {
 
         try {
-            log.info("WebSocket: отправка сообщения в чат {} от {}",
+            log.debug("WebSocket: отправка сообщения в чат {} от {}",
                     requestDto.getChatId(), principal.getName());
 
-            // Получаем ID пользователя из principal
-            var user = userService.getUserByLogin(principal.getName());
-
-            // Сохраняем сообщение через сервис
-            MessageResponseDto savedMessage = chatService.sendMessage(requestDto, user.getId());
-
-            // Рассылаем всем участникам чата
-            messagingTemplate.convertAndSend(
-                    "/topic/chat." + requestDto.getChatId(),
-                    savedMessage
-            );
-
-            log.info("WebSocket: сообщение {} отправлено в чат {}",
-                    savedMessage.getId(), requestDto.getChatId());
+            // Пользователь определен при CONNECT и хранится в атрибутах сессии
+            var user = userIdentityCache.get(principal, headerAccessor.getSessionAttributes());
+
+            // Вложения сохраняются через JPA, обычный путь
+            if (requestDto.getAttachments() != null && !requestDto.getAttachments().isEmpty()) {
+                MessageResponseDto savedMessage = chatService.sendMessage(requestDto, user.getId());
+                messagingTemplate.convertAndSend("/topic/chat." + requestDto.getChatId(), savedMessage);
+                return;
+            }
+
+            // Те же ограничения, что у REST (@NotBlank, @Size на MessageRequestDto.content)
+            var violations = validator.validateProperty(requestDto, "content");
+            if (!violations.isEmpty()) {
+                throw new RuntimeException(violations.iterator().next().getMessage());
+            }
+
+            if (!chatService.isUserParticipant(requestDto.getChatId(), user.getId())) {
+                throw new RuntimeException("Отправитель не является участником чата");
+            }
+
+            // Запись и рассылку выполняет пайплайн, отправитель получит подтверждение в /user/queue/acks
+            boolean accepted = messageIngestPipeline.submit(new MessageIngestPipeline.PendingMessage(
+                    requestDto.getChatId(),
+                    user.getId(),
+                    user.getLogin(),
+                    user.getUsername(),
+                    requestDto.getContent(),
+                    requestDto.getType() != null ? requestDto.getType() : MessageType.TEXT,
+                    requestDto.getClientMessageId(),
+                    Instant.now()
+            ));
+
+            if (!accepted) {
+                log.warn("WebSocket: очередь записи переполнена, сообщение от {} отклонено", principal.getName());
+                messagingTemplate.convertAndSendToUser(
+                        principal.getName(),
+                        "/queue/errors",
+                        Map.of(
+                                "error", "Сервер перегружен, повторите отправку",
+                                "code", "QUEUE_FULL",
+                                "clientMessageId", String.valueOf(requestDto.getClientMessageId())
+                        )
+                );
+            }
 
         } catch (Exception e) {
             log.error("WebSocket: ошибка отправки сообщения", e);
@@ -60,7 +99,11 @@ public class WebSocketController {
             messagingTemplate.convertAndSendToUser(
                     principal.getName(),
                     "/queue/errors",
-                    Map.of("error", "Не удалось отправить сообщение", "details", e.getMessage())
+                    Map.of(
+                            "error", "Не удалось отправить сообщение",
+                            "details", String.valueOf(e.getMessage()),
+                            "clientMessageId", String.valueOf(requestDto.getClientMessageId())
+                    )
             );
         }
     }
@@ -69,40 +112,60 @@ public class WebSocketController {
     /**
      * Уведомление о наборе текста (печатает...)
      * Client: /app/chat.typing
-     * Broadcast: /topic/chat.{chatId}.typing
+     * Broadcast: /topic/chat.{chatId}.typing - список печатающих, не чаще раза в интервал
      */
     @MessageMapping("/chat.typing")
     public void sendTypingStatus(
             @Payload TypingStatusRequestDto requestDto,
-            Principal principal) {
+            Principal principal,
+            SimpMessageHeaderAccessor headerAccessor) {
 
         try {
-            var user = userService.getUserByLogin(principal.getName());
-
-            TypingStatusResponseDto typingStatus = TypingStatusResponseDto.builder()
-                    .chatId(requestDto.getChatId())
-                    .userId(user.getId())
-                    .username(user.getUsername())
-                    .isTyping(requestDto.getIsTyping())
-                    .timestamp(Instant.now())
-                    .build();
+            var user = userIdentityCache.get(principal, headerAccessor.getSessionAttributes());
 
-            // Рассылаем всем участникам чата, кроме отправителя
-            messagingTemplate.convertAndSend(
-                    "/topic/chat." + requestDto.getChatId() + ".typing",
-                    typingStatus
-            );
+            if (!chatService.isUserParticipant(requestDto.getChatId(), user.getId())) {
+                return;
+            }
 
-            log.debug("WebSocket: пользователь {} {} в чате {}",
+            typingAggregator.update(
+                    requestDto.getChatId(),
+                    user.getId(),
                     user.getUsername(),
-                    requestDto.getIsTyping() ? "печатает" : "перестал печатать",
-                    requestDto.getChatId());
+                    Boolean.TRUE.equals(requestDto.getIsTyping())
+            );
 
         } catch (Exception e) {
             log.error("WebSocket: ошибка отправки статуса печати", e);
         }
     }
 
+    /**
+     * Отметка "прочитано до" одним кадром вместо отметки каждого сообщения
+     * Client: /app/chat.read
+     * Broadcast: /topic/chat.{chatId}.read
+     */
+    @MessageMapping("/chat.read")
+    public void markChatAsRead(
+            @Payload ReadUpToRequestDto requestDto,
+            Principal principal,
+            SimpMessageHeaderAccessor headerAccessor) {
+
+        try {
+            var user = userIdentityCache.get(principal, headerAccessor.getSessionAttributes());
+
+            ReadWatermarkResponseDto watermark = chatService.markChatAsRead(
+                    requestDto.getChatId(), user.getId(), requestDto.getUpToMessageId());
+
+            messagingTemplate.convertAndSend(
+                    "/topic/chat." + requestDto.getChatId() + ".read",
+                    watermark
+            );
+
+        } catch (Exception e) {
+            log.error("WebSocket: ошибка отметки прочтения", e);
+        }
+    }
+
     /**
      * Присоединение к чату (пользователь открыл чат)
      * Client: /app/chat.join
@@ -111,10 +174,11 @@ public class WebSocketController {
     @MessageMapping("/chat.join")
     public void joinChat(
             @Payload JoinChatRequestDto requestDto,
-            Principal principal) {
+            Principal principal,
+            SimpMessageHeaderAccessor headerAccessor) {
 
         try {
-            var user = userService.getUserByLogin(principal.getName());
+            var user = userIdentityCache.get(principal, headerAccessor.getSessionAttributes());
 
             UserPresenceDto presence = UserPresenceDto.builder()
                     .chatId(requestDto.getChatId())
@@ -149,9 +213,10 @@ public class WebSocketController {
     @SendToUser("/queue/messages")
     public MessageResponseDto sendPrivateMessage(
             @Payload PrivateMessageRequestDto requestDto,
-            Principal principal) {
+            Principal principal,
+            SimpMessageHeaderAccessor headerAccessor) {
 
-        var sender = userService.getUserByLogin(principal.getName());
+        var sender = userIdentityCache.get(principal, headerAccessor.getSessionAttributes());
 
         // 1. Находим или создаем приватный чат
         ChatResponseDto privateChat = chatService.getOrCreatePrivateChat(
@@ -192,10 +257,11 @@ public class WebSocketController {
     @MessageMapping("/chat.deleteMessage")
     public void deleteMessage(
             @Payload DeleteMessageRequestDto requestDto,
-            Principal principal) {
+            Principal principal,
+            SimpMessageHeaderAccessor headerAccessor) {
 
         try {
-            var user = userService.getUserByLogin(principal.getName());
+            var user = userIdentityCache.get(principal, headerAccessor.getSessionAttributes());
 
             log.info("WebSocket: удаление сообщения {} пользователем {}",
                     requestDto.getMessageId(), user.getUsername());
@@ -0,0 +1,61 @@
+package ru.messenger.chat_service.api.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.messenger.chat_service.domain.entity.enums.ChatType;
+import ru.messenger.chat_service.domain.entity.enums.MessageType;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Элемент списка чатов: заголовок, превью последнего сообщения и непрочитанные */
+@Data
+@NoArgsConstructor
+public class ChatListItemDto {
+
+    private Long id;
+
+    private String name;
+
+    private ChatType type;
+
+    private String avatarUrl;
+
+    private Instant updatedAt;
+
+    private Long lastMessageId;
+
+    private String lastMessageContent;
+
+    private MessageType lastMessageType;
+
+    private Long lastMessageSenderId;
+
+    private String lastMessageSenderUsername;
+
+    private Instant lastMessageSentAt;
+
+    private Integer unreadCount;
+
+    private List<ChatParticipantSummaryDto> participants = new ArrayList<>();
+
+    // Конструктор для JPQL-проекции (чат + последнее сообщение + счетчик одним запросом)
+    public ChatListItemDto(Long id, String name, ChatType type, String avatarUrl, Instant updatedAt,
+                           Long lastMessageId, String lastMessageContent, MessageType lastMessageType,
+                           Long lastMessageSenderId, String lastMessageSenderUsername,
+                           Instant lastMessageSentAt, Integer unreadCount) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.avatarUrl = avatarUrl;
+        this.updatedAt = updatedAt;
+        this.lastMessageId = lastMessageId;
+        this.lastMessageContent = lastMessageContent;
+        this.lastMessageType = lastMessageType;
+        this.lastMessageSenderId = lastMessageSenderId;
+        this.lastMessageSenderUsername = lastMessageSenderUsername;
+        this.lastMessageSentAt = lastMessageSentAt;
+        this.unreadCount = unreadCount;
+    }
+}
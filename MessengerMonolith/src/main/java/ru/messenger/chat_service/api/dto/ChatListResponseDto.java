@@ -0,0 +1,24 @@
+package ru.messenger.chat_service.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/** Страница списка чатов с курсором (updatedAt, id) */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatListResponseDto {
+    private List<ChatListItemDto> chats;
+
+    // Курсор следующей страницы: передать как beforeUpdatedAt / beforeId
+    private Instant nextUpdatedAt;
+    private Long nextId;
+
+    private boolean hasMore;
+}
@@ -0,0 +1,18 @@
+package ru.messenger.chat_service.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Краткая информация об участнике для списка чатов (без email/телефона) */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatParticipantSummaryDto {
+    private Long id;
+    private String username;
+    private String login;
+    private String avatarUrl;
+}
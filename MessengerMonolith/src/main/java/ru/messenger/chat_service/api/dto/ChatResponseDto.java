@@ -22,6 +22,9 @@ public class ChatResponseDto {
 
     private Long lastMessageId;
 
+    // Непрочитанные сообщения текущего пользователя
+    private Integer unreadCount;
+
     private Set<Long> participantIds;
 
     private Instant createdAt;
@@ -0,0 +1,16 @@
+package ru.messenger.chat_service.api.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/** Кто сейчас печатает в чате (один кадр на чат за интервал) */
+@Data
+@Builder
+public class ChatTypingResponseDto {
+    private Long chatId;
+    private List<TypingStatusResponseDto> typingUsers;
+    private Instant timestamp;
+}
@@ -0,0 +1,22 @@
+package ru.messenger.chat_service.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageCursorResponseDto {
+
+    private List<MessageResponseDto> messages;
+
+    // ID сообщения, с которого продолжать выборку (null, если продолжать нечего)
+    private Long nextCursor;
+
+    private boolean hasMore;
+}
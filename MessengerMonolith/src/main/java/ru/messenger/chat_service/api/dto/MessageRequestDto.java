@@ -24,4 +24,7 @@ public class MessageRequestDto {
     private MessageType type;
 
     private Set<AttachmentRequestDto> attachments;
+
+    // Идентификатор, сгенерированный клиентом (для подтверждения отправки)
+    private String clientMessageId;
 }
\ No newline at end of file
@@ -32,4 +32,20 @@ public class MessageResponseDto {
     private Set<AttachmentResponseDto> attachments;
 
     private Instant sentAt;
+
+    // Идентификатор, переданный клиентом при отправке
+    private String clientMessageId;
+
+    // Конструктор для JPQL-проекции (сообщение + имя отправителя одним запросом)
+    public MessageResponseDto(Long id, Long chatId, Long senderId, String senderUsername,
+                              String content, MessageType type, MessageStatus status, Instant sentAt) {
+        this.id = id;
+        this.chatId = chatId;
+        this.senderId = senderId;
+        this.senderUsername = senderUsername;
+        this.content = content;
+        this.type = type;
+        this.status = status;
+        this.sentAt = sentAt;
+    }
 }
\ No newline at end of file
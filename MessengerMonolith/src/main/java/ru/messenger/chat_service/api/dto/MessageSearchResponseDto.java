@@ -0,0 +1,23 @@
+package ru.messenger.chat_service.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchResponseDto {
+
+    private List<MessageSearchResultDto> results;
+
+    private int page;
+
+    private int size;
+
+    private boolean hasMore;
+}
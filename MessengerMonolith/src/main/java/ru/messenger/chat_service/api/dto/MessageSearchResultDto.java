@@ -0,0 +1,33 @@
+package ru.messenger.chat_service.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.messenger.chat_service.domain.entity.enums.MessageType;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchResultDto {
+
+    private Long messageId;
+
+    private Long chatId;
+
+    private Long senderId;
+
+    private String senderUsername;
+
+    private MessageType type;
+
+    private Instant sentAt;
+
+    // Фрагмент текста, совпадения выделены <mark>...</mark> (остальное экранировано)
+    private String snippet;
+
+    private Double rank;
+}
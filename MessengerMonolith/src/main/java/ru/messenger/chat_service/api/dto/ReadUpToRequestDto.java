@@ -0,0 +1,18 @@
+package ru.messenger.chat_service.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Отметка чата прочитанным до указанного сообщения */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadUpToRequestDto {
+    private Long chatId;
+
+    // Если не указан - читаем до последнего сообщения чата
+    private Long upToMessageId;
+}
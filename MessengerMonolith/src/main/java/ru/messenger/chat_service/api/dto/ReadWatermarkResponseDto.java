@@ -0,0 +1,17 @@
+package ru.messenger.chat_service.api.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/** Отметка "прочитано до" пользователя в чате */
+@Data
+@Builder
+public class ReadWatermarkResponseDto {
+    private Long chatId;
+    private Long userId;
+    private Long lastReadMessageId;
+    private Integer markedCount;
+    private Instant timestamp;
+}
@@ -15,6 +15,7 @@ public interface ChatMapper {
 
     @Mapping(target = "participantIds", source = "participants", qualifiedByName = "mapParticipantsToIds")
     @Mapping(target = "lastMessageId", source = "lastMessageId")
+    @Mapping(target = "unreadCount", ignore = true)
     ChatResponseDto toResponseDto(ChatEntity chat);
 
     @Named("mapParticipantsToIds")
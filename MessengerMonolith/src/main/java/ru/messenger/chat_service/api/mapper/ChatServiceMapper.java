@@ -18,6 +18,7 @@ public interface ChatServiceMapper {
     @Mapping(target = "participantIds", source = "participants", qualifiedByName = "mapParticipantsToIds")
     @Mapping(target = "participants", source = "participants", qualifiedByName = "mapParticipantsToDtos")
     @Mapping(target = "lastMessageId", source = "lastMessageId")
+    @Mapping(target = "unreadCount", ignore = true)
     ChatResponseDto toChatResponseDto(ChatEntity chat);
 
     @org.mapstruct.Named("mapParticipantsToIds")
@@ -71,6 +72,7 @@ public interface ChatServiceMapper {
     @Mapping(target = "chatId", source = "chat.id")
     @Mapping(target = "senderId", source = "sender.id")
     @Mapping(target = "senderUsername", expression = "java(message.getSender() != null ? (message.getSender().getUsername() != null ? message.getSender().getUsername() : message.getSender().getLogin()) : \"Неизвестный\")")
+    @Mapping(target = "clientMessageId", ignore = true)
     MessageResponseDto toMessageResponseDto(MessageEntity message);
 
     // Делаем List mapping явным
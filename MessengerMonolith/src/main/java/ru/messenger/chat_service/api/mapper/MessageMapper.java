@@ -16,6 +16,7 @@ public interface MessageMapper {
     @Mapping(target = "senderId", source = "sender.id")
     @Mapping(target = "senderUsername", source = "sender.username")
     @Mapping(target = "attachments", source = "attachments")
+    @Mapping(target = "clientMessageId", ignore = true)
     MessageResponseDto toResponseDto(MessageEntity message);
 
     @AfterMapping
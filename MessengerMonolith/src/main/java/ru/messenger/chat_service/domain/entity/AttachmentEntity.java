@@ -12,7 +12,8 @@ import lombok.*;
 @Builder
 public class AttachmentEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "attachment_seq")
+    @SequenceGenerator(name = "attachment_seq", sequenceName = "attachments_id_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -0,0 +1,39 @@
+package ru.messenger.chat_service.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/** Состояние прочтения чата пользователем: отметка "прочитано до" и счетчик непрочитанных */
+@Entity
+@Table(name = "chat_read_state",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"chat_id", "user_id"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatReadStateEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "last_read_message_id", nullable = false)
+    @Builder.Default
+    private Long lastReadMessageId = 0L;
+
+    @Column(name = "unread_count", nullable = false)
+    @Builder.Default
+    private Integer unreadCount = 0;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+}
@@ -19,8 +19,12 @@ import java.util.Set;
 @AllArgsConstructor
 @Builder
 public class MessageEntity {
+
+    // id сообщений идут в порядке отправки (курсоры, отметки прочтения, last_message_id сравнивают id),
+    // поэтому без pooled-блоков: один nextval на сообщение, так же выделяет id пайплайн записи
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_seq")
+    @SequenceGenerator(name = "message_seq", sequenceName = "messages_id_seq", allocationSize = 1)
     @Column(name = "id")
     private Long id;
 
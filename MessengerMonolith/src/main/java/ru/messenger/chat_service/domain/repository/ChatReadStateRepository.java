@@ -0,0 +1,74 @@
+package ru.messenger.chat_service.domain.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.messenger.chat_service.domain.entity.ChatReadStateEntity;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ChatReadStateRepository extends JpaRepository<ChatReadStateEntity, Long> {
+
+    Optional<ChatReadStateEntity> findByChatIdAndUserId(Long chatId, Long userId);
+
+    // Создать недостающие строки для всех участников чата
+    @Modifying
+    @Query(value = "INSERT INTO chat_read_state (chat_id, user_id) " +
+            "SELECT cp.chat_id, cp.user_id FROM chat_participants cp WHERE cp.chat_id = :chatId " +
+            "ON CONFLICT (chat_id, user_id) DO NOTHING",
+            nativeQuery = true)
+    int ensureStatesForChat(@Param("chatId") Long chatId);
+
+    // Новое сообщение: +1 непрочитанное всем, кроме отправителя
+    @Modifying
+    @Query(value = "UPDATE chat_read_state SET unread_count = unread_count + 1, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE chat_id = :chatId AND user_id <> :senderId",
+            nativeQuery = true)
+    int incrementUnread(@Param("chatId") Long chatId, @Param("senderId") Long senderId);
+
+    // Удаление сообщения: -1 тем, кто его еще не прочитал
+    @Modifying
+    @Query(value = "UPDATE chat_read_state SET unread_count = GREATEST(unread_count - 1, 0), " +
+            "updated_at = CURRENT_TIMESTAMP " +
+            "WHERE chat_id = :chatId AND user_id <> :senderId AND last_read_message_id < :messageId",
+            nativeQuery = true)
+    int decrementUnread(@Param("chatId") Long chatId,
+                        @Param("senderId") Long senderId,
+                        @Param("messageId") Long messageId);
+
+    // Текущая отметка с блокировкой строки до конца транзакции (параллельные отметки идут по очереди)
+    @Query(value = "SELECT last_read_message_id FROM chat_read_state " +
+            "WHERE chat_id = :chatId AND user_id = :userId FOR UPDATE",
+            nativeQuery = true)
+    Optional<Long> lockWatermark(@Param("chatId") Long chatId, @Param("userId") Long userId);
+
+    // Сдвинуть отметку вперед и пересчитать хвост непрочитанных по индексу messages(chat_id, id)
+    @Modifying
+    @Query(value = "INSERT INTO chat_read_state (chat_id, user_id, last_read_message_id, unread_count, updated_at) " +
+            "VALUES (:chatId, :userId, :upToId, 0, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (chat_id, user_id) DO UPDATE SET " +
+            "last_read_message_id = GREATEST(chat_read_state.last_read_message_id, EXCLUDED.last_read_message_id), " +
+            "unread_count = (SELECT COUNT(*) FROM messages m WHERE m.chat_id = :chatId " +
+            "AND m.sender_id <> :userId " +
+            "AND m.id > GREATEST(chat_read_state.last_read_message_id, EXCLUDED.last_read_message_id)), " +
+            "updated_at = CURRENT_TIMESTAMP",
+            nativeQuery = true)
+    int advanceWatermark(@Param("chatId") Long chatId,
+                         @Param("userId") Long userId,
+                         @Param("upToId") Long upToId);
+
+    // Счетчики непрочитанных для страницы чатов одним запросом: [chat_id, unread_count]
+    @Query("SELECT s.chatId, s.unreadCount FROM ChatReadStateEntity s " +
+            "WHERE s.userId = :userId AND s.chatId IN :chatIds")
+    List<Object[]> findUnreadCounts(@Param("userId") Long userId,
+                                    @Param("chatIds") Collection<Long> chatIds);
+
+    @Modifying
+    @Query("DELETE FROM ChatReadStateEntity s WHERE s.chatId = :chatId AND s.userId = :userId")
+    int deleteByChatIdAndUserId(@Param("chatId") Long chatId, @Param("userId") Long userId);
+}
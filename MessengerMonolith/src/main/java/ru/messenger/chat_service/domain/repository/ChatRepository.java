@@ -3,12 +3,16 @@ package ru.messenger.chat_service.domain.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.messenger.chat_service.api.dto.ChatListItemDto;
 import ru.messenger.chat_service.domain.entity.ChatEntity;
 import ru.messenger.user_service.domain.entity.UserEntity;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,10 +24,44 @@ public interface ChatRepository extends JpaRepository<ChatEntity, Long> {
     Page<ChatEntity> findAllByUserId(@Param("userId") Long userId, Pageable pageable);
 
 
+    // Список чатов: заголовок + последнее сообщение + непрочитанные (первая страница)
+    @Query("SELECT new ru.messenger.chat_service.api.dto.ChatListItemDto(" +
+            "c.id, c.name, c.type, c.avatarUrl, c.updatedAt, " +
+            "m.id, m.content, m.type, snd.id, COALESCE(snd.username, snd.login), m.sentAt, " +
+            "COALESCE(s.unreadCount, 0)) " +
+            "FROM ChatEntity c JOIN c.participants me " +
+            "LEFT JOIN MessageEntity m ON m.id = c.lastMessageId " +
+            "LEFT JOIN m.sender snd " +
+            "LEFT JOIN ChatReadStateEntity s ON s.chatId = c.id AND s.userId = :userId " +
+            "WHERE me.id = :userId " +
+            "ORDER BY c.updatedAt DESC, c.id DESC")
+    List<ChatListItemDto> findChatListFirstPage(@Param("userId") Long userId, Pageable pageable);
+
+    // Список чатов: следующая страница по курсору (updatedAt, id)
+    @Query("SELECT new ru.messenger.chat_service.api.dto.ChatListItemDto(" +
+            "c.id, c.name, c.type, c.avatarUrl, c.updatedAt, " +
+            "m.id, m.content, m.type, snd.id, COALESCE(snd.username, snd.login), m.sentAt, " +
+            "COALESCE(s.unreadCount, 0)) " +
+            "FROM ChatEntity c JOIN c.participants me " +
+            "LEFT JOIN MessageEntity m ON m.id = c.lastMessageId " +
+            "LEFT JOIN m.sender snd " +
+            "LEFT JOIN ChatReadStateEntity s ON s.chatId = c.id AND s.userId = :userId " +
+            "WHERE me.id = :userId " +
+            "AND (c.updatedAt < :beforeUpdatedAt OR (c.updatedAt = :beforeUpdatedAt AND c.id < :beforeId)) " +
+            "ORDER BY c.updatedAt DESC, c.id DESC")
+    List<ChatListItemDto> findChatListPageBefore(@Param("userId") Long userId,
+                                                 @Param("beforeUpdatedAt") Instant beforeUpdatedAt,
+                                                 @Param("beforeId") Long beforeId,
+                                                 Pageable pageable);
+
+    // Краткие данные участников для набора чатов: [chat_id, user_id, username, login, avatar_url]
+    @Query("SELECT c.id, p.id, p.username, p.login, p.avatarUrl FROM ChatEntity c " +
+            "JOIN c.participants p WHERE c.id IN :chatIds")
+    List<Object[]> findParticipantSummaries(@Param("chatIds") Collection<Long> chatIds);
+
     // Найти чаты с непрочитанными сообщениями
-    @Query("SELECT c FROM ChatEntity c JOIN c.participants p WHERE p.id = :userId AND " +
-            "EXISTS (SELECT 1 FROM MessageEntity m WHERE m.chat = c AND " +
-            "m.status = 'SENT' AND :userId NOT IN elements(m.readBy))")
+    @Query("SELECT c FROM ChatEntity c WHERE c.id IN (" +
+            "SELECT s.chatId FROM ChatReadStateEntity s WHERE s.userId = :userId AND s.unreadCount > 0)")
     List<ChatEntity> findChatsWithUnreadMessages(@Param("userId") Long userId);
 
     // Найти приватный чат между двумя пользователями
@@ -35,6 +73,20 @@ public interface ChatRepository extends JpaRepository<ChatEntity, Long> {
     Optional<ChatEntity> findPrivateChat(@Param("userId1") Long userId1,
                                          @Param("userId2") Long userId2);
 
+    // Обновить последнее сообщение чата одним UPDATE (без загрузки сущности)
+    @Modifying
+    @Query("UPDATE ChatEntity c SET c.updatedAt = :updatedAt, c.lastMessageId = " +
+            "CASE WHEN c.lastMessageId IS NULL OR c.lastMessageId < :messageId THEN :messageId " +
+            "ELSE c.lastMessageId END " +
+            "WHERE c.id = :chatId")
+    int updateLastMessage(@Param("chatId") Long chatId,
+                          @Param("messageId") Long messageId,
+                          @Param("updatedAt") Instant updatedAt);
+
+    // Id участников чата (для кэша проверки доступа)
+    @Query("SELECT p.id FROM ChatEntity c JOIN c.participants p WHERE c.id = :chatId")
+    List<Long> findParticipantIds(@Param("chatId") Long chatId);
+
     // Проверить, является ли пользователь участником чата
     @Query("SELECT COUNT(c) > 0 FROM ChatEntity c " +
             "JOIN c.participants p " +
@@ -42,5 +94,13 @@ public interface ChatRepository extends JpaRepository<ChatEntity, Long> {
     boolean isUserParticipant(@Param("chatId") Long chatId,
                               @Param("userId") Long userId);
 
+    // Собеседники по небольшим чатам для набора пользователей: [user_id, other_user_id]
+    @Query(value = "SELECT DISTINCT me.user_id, other.user_id FROM chat_participants me " +
+            "JOIN chat_participants other ON other.chat_id = me.chat_id AND other.user_id <> me.user_id " +
+            "WHERE me.user_id IN (:userIds) " +
+            "AND (SELECT COUNT(*) FROM chat_participants cp WHERE cp.chat_id = me.chat_id) <= :maxChatSize",
+            nativeQuery = true)
+    List<Object[]> findCoParticipantPairs(@Param("userIds") Collection<Long> userIds,
+                                          @Param("maxChatSize") int maxChatSize);
 
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import ru.messenger.chat_service.api.dto.MessageResponseDto;
 import ru.messenger.chat_service.domain.entity.MessageEntity;
 
 import java.time.Instant;
@@ -17,11 +18,31 @@ public interface MessageRepository extends JpaRepository<MessageEntity, Long> {
     @Query("SELECT m FROM MessageEntity m WHERE m.chat.id = :chatId ORDER BY m.sentAt DESC")
     Page<MessageEntity> findByChatIdOrderBySentAtDesc(@Param("chatId") Long chatId, Pageable pageable);
 
-    // Метод для пометки сообщений как прочитанных
+    // Пометка сообщений как прочитанных в диапазоне (afterId, upToId] - только новое с прошлой отметки
     @Modifying
     @Query("UPDATE MessageEntity m SET m.status = 'READ' " +
-            "WHERE m.chat.id = :chatId AND m.sender.id != :userId AND m.status != 'READ'")
-    void markMessagesAsReadForUser(@Param("chatId") Long chatId, @Param("userId") Long userId);
+            "WHERE m.chat.id = :chatId AND m.id > :afterId AND m.id <= :upToId " +
+            "AND m.sender.id != :userId AND m.status != 'READ'")
+    int markMessagesAsReadForUser(@Param("chatId") Long chatId,
+                                  @Param("userId") Long userId,
+                                  @Param("afterId") Long afterId,
+                                  @Param("upToId") Long upToId);
+
+    // Массовая вставка отметок о прочтении в диапазоне (afterId, upToId] одним запросом (идемпотентно)
+    @Modifying
+    @Query(value = "INSERT INTO message_read_by (message_id, user_id, read_at) " +
+            "SELECT m.id, :userId, CURRENT_TIMESTAMP FROM messages m " +
+            "WHERE m.chat_id = :chatId AND m.id > :afterId AND m.id <= :upToId AND m.sender_id <> :userId " +
+            "ON CONFLICT (message_id, user_id) DO NOTHING",
+            nativeQuery = true)
+    int insertReadReceiptsUpTo(@Param("chatId") Long chatId,
+                               @Param("userId") Long userId,
+                               @Param("afterId") Long afterId,
+                               @Param("upToId") Long upToId);
+
+    // Последнее сообщение чата
+    @Query("SELECT MAX(m.id) FROM MessageEntity m WHERE m.chat.id = :chatId")
+    Long findMaxMessageId(@Param("chatId") Long chatId);
 
     // Получить новые сообщения
     @Query("SELECT m FROM MessageEntity m " +
@@ -31,6 +52,64 @@ public interface MessageRepository extends JpaRepository<MessageEntity, Long> {
     List<MessageEntity> findNewMessages(@Param("chatId") Long chatId,
                                         @Param("since") Instant since);
 
+    // Инкрементальная синхронизация по времени (индекс messages(chat_id, sent_at))
+    @Query("SELECT new ru.messenger.chat_service.api.dto.MessageResponseDto(" +
+            "m.id, m.chat.id, s.id, COALESCE(s.username, s.login), m.content, m.type, m.status, m.sentAt) " +
+            "FROM MessageEntity m JOIN m.sender s " +
+            "WHERE m.chat.id = :chatId AND m.sentAt > :since " +
+            "ORDER BY m.sentAt ASC, m.id ASC")
+    List<MessageResponseDto> findNewMessagesSince(@Param("chatId") Long chatId,
+                                                  @Param("since") Instant since,
+                                                  Pageable pageable);
+
+    // Инкрементальная синхронизация по курсору (индекс messages(chat_id, id))
+    @Query("SELECT new ru.messenger.chat_service.api.dto.MessageResponseDto(" +
+            "m.id, m.chat.id, s.id, COALESCE(s.username, s.login), m.content, m.type, m.status, m.sentAt) " +
+            "FROM MessageEntity m JOIN m.sender s " +
+            "WHERE m.chat.id = :chatId AND m.id > :afterId " +
+            "ORDER BY m.id ASC")
+    List<MessageResponseDto> findNewMessagesAfterId(@Param("chatId") Long chatId,
+                                                    @Param("afterId") Long afterId,
+                                                    Pageable pageable);
+
+    // История: последние сообщения чата (обратный проход по индексу messages(chat_id, id))
+    @Query("SELECT new ru.messenger.chat_service.api.dto.MessageResponseDto(" +
+            "m.id, m.chat.id, s.id, COALESCE(s.username, s.login), m.content, m.type, m.status, m.sentAt) " +
+            "FROM MessageEntity m JOIN m.sender s " +
+            "WHERE m.chat.id = :chatId " +
+            "ORDER BY m.id DESC")
+    List<MessageResponseDto> findLatestMessages(@Param("chatId") Long chatId, Pageable pageable);
+
+    // История: сообщения старше курсора
+    @Query("SELECT new ru.messenger.chat_service.api.dto.MessageResponseDto(" +
+            "m.id, m.chat.id, s.id, COALESCE(s.username, s.login), m.content, m.type, m.status, m.sentAt) " +
+            "FROM MessageEntity m JOIN m.sender s " +
+            "WHERE m.chat.id = :chatId AND m.id < :beforeId " +
+            "ORDER BY m.id DESC")
+    List<MessageResponseDto> findMessagesBeforeId(@Param("chatId") Long chatId,
+                                                  @Param("beforeId") Long beforeId,
+                                                  Pageable pageable);
+
+    // Полнотекстовый поиск по чатам пользователя (GIN-индекс по content_tsv)
+    // [id, chat_id, sender_id, sender_username, message_type, sent_at, rank, snippet]
+    @Query(value = "SELECT m.id, m.chat_id, m.sender_id, COALESCE(u.username, u.login), m.message_type, m.sent_at, " +
+            "ts_rank(m.content_tsv, sq.q) AS rank, " +
+            "ts_headline('russian', m.content, sq.q, " +
+            "'StartSel=<mark>, StopSel=</mark>, MaxFragments=2, MaxWords=20, MinWords=5') " +
+            "FROM (SELECT websearch_to_tsquery('russian', :query) || websearch_to_tsquery('english', :query) AS q) sq " +
+            "JOIN messages m ON m.content_tsv @@ sq.q " +
+            "JOIN chat_participants cp ON cp.chat_id = m.chat_id AND cp.user_id = :userId " +
+            "JOIN users u ON u.id = m.sender_id " +
+            "WHERE (CAST(:chatId AS BIGINT) IS NULL OR m.chat_id = :chatId) " +
+            "ORDER BY rank DESC, m.id DESC " +
+            "LIMIT :limit OFFSET :offset",
+            nativeQuery = true)
+    List<Object[]> searchMessages(@Param("userId") Long userId,
+                                  @Param("query") String query,
+                                  @Param("chatId") Long chatId,
+                                  @Param("limit") int limit,
+                                  @Param("offset") int offset);
+
     // Получить непрочитанные сообщения - ИСПРАВЛЕННЫЙ ЗАПРОС
     @Query("SELECT m FROM MessageEntity m " +
             "WHERE m.chat.id = :chatId " +
@@ -45,11 +124,9 @@ public interface MessageRepository extends JpaRepository<MessageEntity, Long> {
             "AND m.status != 'READ'")
     List<MessageEntity> findUnreadMessagesByStatus(@Param("chatId") Long chatId, @Param("userId") Long userId);
 
-    // Простой вариант - подсчет непрочитанных
-    @Query("SELECT COUNT(m) FROM MessageEntity m " +
-            "WHERE m.chat.id = :chatId " +
-            "AND m.sender.id != :userId " +
-            "AND (m.readBy IS EMPTY OR :userId NOT IN (SELECT r FROM m.readBy r))")
+    // Подсчет непрочитанных - готовый счетчик из chat_read_state
+    @Query("SELECT CAST(COALESCE(MAX(s.unreadCount), 0) AS long) FROM ChatReadStateEntity s " +
+            "WHERE s.chatId = :chatId AND s.userId = :userId")
     long countUnreadMessages(@Param("chatId") Long chatId, @Param("userId") Long userId);
 
     // Оставляем только основные методы:
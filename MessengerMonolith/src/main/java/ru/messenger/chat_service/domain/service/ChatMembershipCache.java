@@ -0,0 +1,142 @@
+package ru.messenger.chat_service.domain.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.messenger.chat_service.domain.repository.ChatRepository;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кэш участников чатов для проверки доступа.
+ * Для каждого чата хранится отсортированный long[] id участников, проверка - бинарный поиск.
+ * Размер ограничен (LRU), большие чаты не кэшируются и проверяются запросом к БД.
+ * Загрузка, пересекшаяся со сбросом чата, в кэш не попадает; запись живет не дольше
+ * chat.membership-cache.ttl-ms. При chat.broker.mode=relay кэш выключен: сброс виден только
+ * своему узлу, и исключенный на другом узле участник сохранил бы доступ.
+ */
+@Slf4j
+@Component
+public class ChatMembershipCache {
+
+    // Метка "чат слишком большой для кэша"
+    private static final long[] TOO_LARGE = new long[0];
+
+    // Счетчики версий по секциям чатов (для отбраковки устаревших загрузок)
+    private static final int VERSION_STRIPES = 1024;
+
+    private final ChatRepository chatRepository;
+    private final int maxMembersPerChat;
+    private final long ttlMs;
+    private final boolean enabled;
+    private final Map<Long, Members> members;
+    private final long[] versions = new long[VERSION_STRIPES];
+
+    public ChatMembershipCache(ChatRepository chatRepository,
+                               @Value("${chat.membership-cache.max-chats:10000}") int maxChats,
+                               @Value("${chat.membership-cache.max-members-per-chat:5000}") int maxMembersPerChat,
+                               @Value("${chat.membership-cache.ttl-ms:30000}") long ttlMs,
+                               @Value("${chat.broker.mode:simple}") String brokerMode) {
+        this.chatRepository = chatRepository;
+        this.maxMembersPerChat = maxMembersPerChat;
+        this.ttlMs = ttlMs;
+        this.enabled = !"relay".equalsIgnoreCase(brokerMode);
+        this.members = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Members> eldest) {
+                return size() > maxChats;
+            }
+        };
+    }
+
+    /**
+     * Отсортированные id участников и момент загрузки
+     */
+    private record Members(long[] ids, long loadedAt) {
+    }
+
+    /**
+     * Является ли пользователь участником чата
+     */
+    public boolean isMember(Long chatId, Long userId) {
+        if (chatId == null || userId == null) {
+            return false;
+        }
+        if (!enabled) {
+            return chatRepository.isUserParticipant(chatId, userId);
+        }
+
+        long[] ids = getOrLoad(chatId);
+        if (ids == TOO_LARGE) {
+            return chatRepository.isUserParticipant(chatId, userId);
+        }
+        return Arrays.binarySearch(ids, userId) >= 0;
+    }
+
+    /**
+     * Сбросить участников чата. Внутри транзакции сброс повторяется после коммита,
+     * чтобы параллельное чтение не закэшировало старый состав.
+     */
+    public void invalidate(Long chatId) {
+        evict(chatId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(chatId);
+                }
+            });
+        }
+    }
+
+    private long[] getOrLoad(Long chatId) {
+        long token;
+        synchronized (members) {
+            Members cached = members.get(chatId);
+            if (cached != null && System.currentTimeMillis() - cached.loadedAt() < ttlMs) {
+                return cached.ids();
+            }
+            token = versions[stripe(chatId)];
+        }
+
+        long loadedAt = System.currentTimeMillis();
+        long[] ids;
+        List<Long> participantIds = chatRepository.findParticipantIds(chatId);
+        if (participantIds.size() > maxMembersPerChat) {
+            ids = TOO_LARGE;
+        } else {
+            ids = new long[participantIds.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = participantIds.get(i);
+            }
+            Arrays.sort(ids);
+        }
+
+        synchronized (members) {
+            // Состав менялся во время загрузки - результат может быть устаревшим
+            if (versions[stripe(chatId)] != token) {
+                return ids;
+            }
+            members.put(chatId, new Members(ids, loadedAt));
+        }
+        log.debug("Участники чата {} загружены в кэш ({} шт.)", chatId, participantIds.size());
+        return ids;
+    }
+
+    private void evict(Long chatId) {
+        synchronized (members) {
+            versions[stripe(chatId)]++;
+            members.remove(chatId);
+        }
+    }
+
+    private int stripe(Long chatId) {
+        return (int) Math.floorMod(chatId, (long) VERSION_STRIPES);
+    }
+}
@@ -3,17 +3,22 @@ package ru.messenger.chat_service.domain.service;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.util.HtmlUtils;
 import ru.messenger.chat_service.api.dto.*;
 import ru.messenger.chat_service.domain.entity.ChatEntity;
 import ru.messenger.chat_service.domain.entity.MessageEntity;
 import ru.messenger.chat_service.domain.entity.enums.ChatType;
 import ru.messenger.chat_service.domain.entity.enums.MessageStatus;
+import ru.messenger.chat_service.domain.entity.enums.MessageType;
 import ru.messenger.chat_service.api.mapper.ChatServiceMapper;
+import ru.messenger.chat_service.domain.repository.ChatReadStateRepository;
 import ru.messenger.chat_service.domain.repository.ChatRepository;
 import ru.messenger.chat_service.domain.repository.MessageRepository;
+import ru.messenger.common.NativeQueryValues;
 import ru.messenger.user_service.domain.entity.UserEntity;
 import ru.messenger.user_service.domain.repository.UserRepository;
 import ru.messenger.user_service.domain.service.exception.UserNotFoundException;
@@ -26,10 +31,23 @@ import java.util.*;
 @Slf4j
 public class ChatService {
 
+    // Жесткий лимит сообщений за один вызов инкрементальной синхронизации
+    public static final int MAX_NEW_MESSAGES_PER_CALL = 200;
+
+    // Максимальный размер страницы списка чатов
+    public static final int MAX_CHAT_LIST_PAGE_SIZE = 100;
+
+    // Поиск по сообщениям: размер страницы и длина запроса
+    public static final int MAX_SEARCH_PAGE_SIZE = 50;
+    public static final int MAX_SEARCH_QUERY_LENGTH = 200;
+
     private final ChatRepository chatRepository;
     private final MessageRepository messageRepository;
+    private final ChatReadStateRepository chatReadStateRepository;
     private final UserRepository userRepository;
     private final ChatServiceMapper chatServiceMapper;
+    private final ChatMembershipCache chatMembershipCache;
+    private final RecentMessagesCache recentMessagesCache;
 
     /**
      * Получить список чатов пользователя
@@ -39,8 +57,62 @@ public class ChatService {
         log.info("Получение чатов для пользователя ID: {}", userId);
 
         Page<ChatEntity> chats = chatRepository.findAllByUserId(userId, pageable);
+        Page<ChatResponseDto> result = chats.map(chatServiceMapper::toChatResponseDto);
+
+        // Счетчики непрочитанных для всей страницы одним запросом
+        if (!result.isEmpty()) {
+            List<Long> chatIds = result.getContent().stream().map(ChatResponseDto::getId).toList();
+            Map<Long, Integer> unread = new HashMap<>();
+            for (Object[] row : chatReadStateRepository.findUnreadCounts(userId, chatIds)) {
+                unread.put((Long) row[0], (Integer) row[1]);
+            }
+            result.forEach(dto -> dto.setUnreadCount(unread.getOrDefault(dto.getId(), 0)));
+        }
 
-        return chats.map(chatServiceMapper::toChatResponseDto);
+        return result;
+    }
+
+    /**
+     * Список чатов для боковой панели: два запроса на страницу независимо от ее размера
+     */
+    @Transactional(readOnly = true)
+    public ChatListResponseDto getChatList(Long userId, Instant beforeUpdatedAt, Long beforeId, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_CHAT_LIST_PAGE_SIZE));
+        Pageable pageable = Pageable.ofSize(pageSize + 1);
+
+        List<ChatListItemDto> chats = beforeUpdatedAt != null && beforeId != null
+                ? chatRepository.findChatListPageBefore(userId, beforeUpdatedAt, beforeId, pageable)
+                : chatRepository.findChatListFirstPage(userId, pageable);
+
+        boolean hasMore = chats.size() > pageSize;
+        if (hasMore) {
+            chats = new ArrayList<>(chats.subList(0, pageSize));
+        }
+
+        if (!chats.isEmpty()) {
+            Map<Long, ChatListItemDto> byId = new HashMap<>();
+            for (ChatListItemDto chat : chats) {
+                byId.put(chat.getId(), chat);
+            }
+
+            for (Object[] row : chatRepository.findParticipantSummaries(byId.keySet())) {
+                byId.get((Long) row[0]).getParticipants().add(ChatParticipantSummaryDto.builder()
+                        .id((Long) row[1])
+                        .username((String) row[2])
+                        .login((String) row[3])
+                        .avatarUrl((String) row[4])
+                        .build());
+            }
+        }
+
+        ChatListItemDto last = chats.isEmpty() ? null : chats.get(chats.size() - 1);
+
+        return ChatListResponseDto.builder()
+                .chats(chats)
+                .nextUpdatedAt(last != null ? last.getUpdatedAt() : null)
+                .nextId(last != null ? last.getId() : null)
+                .hasMore(hasMore)
+                .build();
     }
 
     /**
@@ -77,7 +149,9 @@ public class ChatService {
                 .updatedAt(Instant.now())
                 .build();
 
-        ChatEntity savedChat = chatRepository.save(chat);
+        ChatEntity savedChat = chatRepository.saveAndFlush(chat);
+        chatReadStateRepository.ensureStatesForChat(savedChat.getId());
+        chatMembershipCache.invalidate(savedChat.getId());
         log.info("Создан новый приватный чат ID: {}", savedChat.getId());
 
         return chatServiceMapper.toChatResponseDto(savedChat);
@@ -109,7 +183,9 @@ public class ChatService {
                 .avatarUrl(requestDto.getAvatarUrl())
                 .build();
 
-        ChatEntity savedChat = chatRepository.save(chat);
+        ChatEntity savedChat = chatRepository.saveAndFlush(chat);
+        chatReadStateRepository.ensureStatesForChat(savedChat.getId());
+        chatMembershipCache.invalidate(savedChat.getId());
         log.info("Создан новый чат ID: {}", savedChat.getId());
 
         return chatServiceMapper.toChatResponseDto(savedChat);
@@ -125,16 +201,7 @@ public class ChatService {
         ChatEntity chat = chatRepository.findById(chatId)
                 .orElseThrow(() -> new RuntimeException("Чат не найден"));
 
-        // Простая проверка участника
-        boolean isParticipant = false;
-        for (UserEntity participant : chat.getParticipants()) {
-            if (participant.getId().equals(userId)) {
-                isParticipant = true;
-                break;
-            }
-        }
-
-        if (!isParticipant) {
+        if (!chatMembershipCache.isMember(chatId, userId)) {
             throw new RuntimeException("Доступ к чату запрещен");
         }
 
@@ -158,7 +225,12 @@ public class ChatService {
         chat.getParticipants().add(newParticipant);
         chat.setUpdatedAt(Instant.now());
 
-        ChatEntity updatedChat = chatRepository.save(chat);
+        ChatEntity updatedChat = chatRepository.saveAndFlush(chat);
+        chatMembershipCache.invalidate(chat.getId());
+
+        // Новый участник начинает с текущего конца истории
+        chatReadStateRepository.advanceWatermark(chat.getId(), newParticipant.getId(),
+                chat.getLastMessageId() != null ? chat.getLastMessageId() : 0L);
 
         return chatServiceMapper.toChatResponseDto(updatedChat);
     }
@@ -181,6 +253,8 @@ public class ChatService {
         chat.setUpdatedAt(Instant.now());
 
         chatRepository.save(chat);
+        chatReadStateRepository.deleteByChatIdAndUserId(chat.getId(), participant.getId());
+        chatMembershipCache.invalidate(chat.getId());
     }
 
     /**
@@ -216,25 +290,16 @@ public class ChatService {
         log.info("Отправка сообщения в чат {} от пользователя {}",
                 requestDto.getChatId(), senderId);
 
-        ChatEntity chat = chatRepository.findById(requestDto.getChatId())
-                .orElseThrow(() -> new RuntimeException("Чат не найден"));
+        if (!chatMembershipCache.isMember(requestDto.getChatId(), senderId)) {
+            throw new RuntimeException("Отправитель не является участником чата");
+        }
+
+        // Чат нужен только как ссылка для внешнего ключа - без SELECT
+        ChatEntity chat = chatRepository.getReferenceById(requestDto.getChatId());
 
         UserEntity sender = userRepository.findById(senderId)
                 .orElseThrow(() -> new UserNotFoundException("Отправитель не найден"));
 
-        // Проверка участника
-        boolean isParticipant = false;
-        for (UserEntity participant : chat.getParticipants()) {
-            if (participant.getId().equals(senderId)) {
-                isParticipant = true;
-                break;
-            }
-        }
-
-        if (!isParticipant) {
-            throw new RuntimeException("Отправитель не является участником чата");
-        }
-
         MessageEntity message = MessageEntity.builder()
                 .chat(chat)
                 .sender(sender)
@@ -246,13 +311,15 @@ public class ChatService {
 
         MessageEntity savedMessage = messageRepository.save(message);
 
-        chat.setLastMessageId(savedMessage.getId());
-        chat.setUpdatedAt(Instant.now());
-        chatRepository.save(chat);
+        chatRepository.updateLastMessage(requestDto.getChatId(), savedMessage.getId(), Instant.now());
+        chatReadStateRepository.incrementUnread(requestDto.getChatId(), senderId);
 
         log.info("Сообщение отправлено ID: {}", savedMessage.getId());
 
-        return chatServiceMapper.toMessageResponseDto(savedMessage);
+        MessageResponseDto response = chatServiceMapper.toMessageResponseDto(savedMessage);
+        recentMessagesCache.append(response);
+        response.setClientMessageId(requestDto.getClientMessageId());
+        return response;
     }
 
 
@@ -261,24 +328,19 @@ public class ChatService {
         log.info("Получение сообщений чата {} для пользователя {}",
                 filterDto.getChatId(), userId);
 
-        ChatEntity chat = chatRepository.findById(filterDto.getChatId())
-                .orElseThrow(() -> new RuntimeException("Чат не найден"));
-
-        boolean isParticipant = false;
-        for (UserEntity participant : chat.getParticipants()) {
-            if (participant.getId().equals(userId)) {
-                isParticipant = true;
-                break;
-            }
-        }
-
-        if (!isParticipant) {
+        if (!chatMembershipCache.isMember(filterDto.getChatId(), userId)) {
             throw new RuntimeException("Доступ к сообщениям запрещен");
         }
 
         Pageable pageable = Pageable.ofSize(filterDto.getSize())
                 .withPage(filterDto.getPage());
 
+        // Первая страница - из кэша последних сообщений
+        if (filterDto.getPage() == 0 && filterDto.getSize() <= recentMessagesCache.getMessagesPerChat()) {
+            RecentMessagesCache.Snapshot recent = getRecentMessages(filterDto.getChatId(), filterDto.getSize());
+            return new PageImpl<>(recent.messages(), pageable, recent.totalCount());
+        }
+
         log.debug("Загрузка сообщений для чата {} со страницы {}",
                 filterDto.getChatId(), filterDto.getPage());
 
@@ -287,75 +349,39 @@ public class ChatService {
 
         log.debug("Найдено {} сообщений", messages.getTotalElements());
 
-        return messages.map(message -> {
-            try {
-                return chatServiceMapper.toMessageResponseDto(message);
-            } catch (Exception e) {
-                log.error("Ошибка маппинга сообщения {}", message.getId(), e);
-                MessageResponseDto dto = new MessageResponseDto();
-                dto.setId(message.getId());
-                dto.setContent(message.getContent());
-                dto.setType(message.getType());
-                dto.setStatus(message.getStatus());
-                dto.setSentAt(message.getSentAt());
-
-                if (message.getChat() != null) {
-                    dto.setChatId(message.getChat().getId());
-                }
-
-                if (message.getSender() != null) {
-                    dto.setSenderId(message.getSender().getId());
-                    String username = message.getSender().getUsername();
-                    if (username == null || username.trim().isEmpty()) {
-                        username = message.getSender().getLogin();
-                    }
-                    dto.setSenderUsername(username);
-                }
-
-                return dto;
-            }
-        });
+        return messages.map(this::toMessageResponseDto);
     }
 
     /**
-     * Получить новые сообщения (для WebSocket/лонг-пуллинга)
+     * Последние сообщения чата: из кэша, при промахе - из БД с заполнением кэша
      */
-    @Transactional(readOnly = true)
-    public List<MessageResponseDto> getNewMessages(Long chatId, Long userId, Instant since) {
-        // Простая проверка участника
-        ChatEntity chat = chatRepository.findById(chatId)
-                .orElseThrow(() -> new RuntimeException("Чат не найден"));
-
-        boolean isParticipant = false;
-        for (UserEntity participant : chat.getParticipants()) {
-            if (participant.getId().equals(userId)) {
-                isParticipant = true;
-                break;
-            }
+    private RecentMessagesCache.Snapshot getRecentMessages(Long chatId, int limit) {
+        RecentMessagesCache.Snapshot cached = recentMessagesCache.get(chatId, limit);
+        if (cached != null) {
+            return cached;
         }
 
-        if (!isParticipant) {
-            throw new RuntimeException("Доступ запрещен");
-        }
+        long token = recentMessagesCache.loadToken(chatId);
+        // Тот же порядок по id, что у append, markRead и курсорных запросов
+        int messagesPerChat = recentMessagesCache.getMessagesPerChat();
+        List<MessageResponseDto> latest = messageRepository.findLatestMessages(
+                chatId, Pageable.ofSize(messagesPerChat));
+        long totalCount = latest.size() < messagesPerChat
+                ? latest.size()
+                : messageRepository.countByChatId(chatId);
 
-        // Упрощаем - берем все сообщения после указанного времени
-        List<MessageEntity> allMessages = messageRepository.findAll();
-        List<MessageEntity> filteredMessages = new ArrayList<>();
+        recentMessagesCache.fill(chatId, latest, totalCount, token);
 
-        for (MessageEntity message : allMessages) {
-            if (message.getChat() != null &&
-                    message.getChat().getId().equals(chatId) &&
-                    message.getSentAt() != null &&
-                    message.getSentAt().isAfter(since)) {
-                filteredMessages.add(message);
-            }
-        }
-
-        // Сортируем по времени
-        filteredMessages.sort((m1, m2) -> m1.getSentAt().compareTo(m2.getSentAt()));
+        return new RecentMessagesCache.Snapshot(
+                new ArrayList<>(latest.subList(0, Math.min(limit, latest.size()))),
+                totalCount);
+    }
 
-        List<MessageResponseDto> result = new ArrayList<>();
-        for (MessageEntity message : filteredMessages) {
+    private MessageResponseDto toMessageResponseDto(MessageEntity message) {
+        try {
+            return chatServiceMapper.toMessageResponseDto(message);
+        } catch (Exception e) {
+            log.error("Ошибка маппинга сообщения {}", message.getId(), e);
             MessageResponseDto dto = new MessageResponseDto();
             dto.setId(message.getId());
             dto.setContent(message.getContent());
@@ -376,10 +402,149 @@ public class ChatService {
                 dto.setSenderUsername(username);
             }
 
-            result.add(dto);
+            return dto;
         }
+    }
 
-        return result;
+    /**
+     * Получить новые сообщения (для WebSocket/лонг-пуллинга).
+     * Выборка идет по индексу messages(chat_id, id) / messages(chat_id, sent_at)
+     * и ограничена MAX_NEW_MESSAGES_PER_CALL; продолжение - по nextCursor.
+     */
+    @Transactional(readOnly = true)
+    public MessageCursorResponseDto getNewMessages(Long chatId, Long userId, Instant since,
+                                                   Long afterId, int limit) {
+        if (!chatMembershipCache.isMember(chatId, userId)) {
+            throw new RuntimeException("Доступ запрещен");
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_NEW_MESSAGES_PER_CALL));
+        // Берем на одну запись больше, чтобы узнать, есть ли продолжение
+        Pageable pageable = Pageable.ofSize(pageSize + 1);
+
+        List<MessageResponseDto> messages = afterId != null
+                ? messageRepository.findNewMessagesAfterId(chatId, afterId, pageable)
+                : messageRepository.findNewMessagesSince(chatId, since, pageable);
+
+        boolean hasMore = messages.size() > pageSize;
+        if (hasMore) {
+            messages = new ArrayList<>(messages.subList(0, pageSize));
+        }
+
+        Long nextCursor = messages.isEmpty() ? afterId : messages.get(messages.size() - 1).getId();
+
+        return MessageCursorResponseDto.builder()
+                .messages(messages)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * История сообщений по курсору (без подсчета общего количества)
+     * before - сообщения старше указанного id, от новых к старым (без курсора - самые последние);
+     * after - сообщения новее указанного id, от старых к новым.
+     */
+    @Transactional(readOnly = true)
+    public MessageCursorResponseDto getMessageHistory(Long chatId, Long userId, Long before,
+                                                      Long after, int limit) {
+        if (!chatMembershipCache.isMember(chatId, userId)) {
+            throw new RuntimeException("Доступ к сообщениям запрещен");
+        }
+        if (before != null && after != null) {
+            throw new RuntimeException("Нельзя указывать before и after одновременно");
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_NEW_MESSAGES_PER_CALL));
+        Pageable pageable = Pageable.ofSize(pageSize + 1);
+
+        List<MessageResponseDto> messages;
+        if (after != null) {
+            messages = messageRepository.findNewMessagesAfterId(chatId, after, pageable);
+        } else if (before != null) {
+            messages = messageRepository.findMessagesBeforeId(chatId, before, pageable);
+        } else if (pageSize <= recentMessagesCache.getMessagesPerChat()) {
+            // Первая страница - из кэша последних сообщений
+            RecentMessagesCache.Snapshot recent = getRecentMessages(chatId, pageSize);
+            List<MessageResponseDto> latest = recent.messages();
+            return MessageCursorResponseDto.builder()
+                    .messages(latest)
+                    .nextCursor(latest.isEmpty() ? null : latest.get(latest.size() - 1).getId())
+                    .hasMore(recent.totalCount() > latest.size())
+                    .build();
+        } else {
+            messages = messageRepository.findLatestMessages(chatId, pageable);
+        }
+
+        boolean hasMore = messages.size() > pageSize;
+        if (hasMore) {
+            messages = new ArrayList<>(messages.subList(0, pageSize));
+        }
+
+        Long nextCursor = messages.isEmpty() ? null : messages.get(messages.size() - 1).getId();
+
+        return MessageCursorResponseDto.builder()
+                .messages(messages)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Полнотекстовый поиск по сообщениям чатов пользователя (или одного чата).
+     * Результаты по убыванию релевантности, совпадения выделены во фрагменте.
+     */
+    @Transactional(readOnly = true)
+    public MessageSearchResponseDto searchMessages(Long userId, String query, Long chatId, int page, int size) {
+        String text = query == null ? "" : query.trim();
+        if (text.isEmpty()) {
+            throw new RuntimeException("Пустой поисковый запрос");
+        }
+        if (text.length() > MAX_SEARCH_QUERY_LENGTH) {
+            text = text.substring(0, MAX_SEARCH_QUERY_LENGTH);
+        }
+        if (chatId != null && !chatMembershipCache.isMember(chatId, userId)) {
+            throw new RuntimeException("Доступ запрещен");
+        }
+
+        int pageSize = Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE));
+        int pageNumber = Math.max(0, page);
+
+        // Берем на одну запись больше, чтобы узнать, есть ли следующая страница
+        List<Object[]> rows = messageRepository.searchMessages(
+                userId, text, chatId, pageSize + 1, pageNumber * pageSize);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<MessageSearchResultDto> results = new ArrayList<>(Math.min(rows.size(), pageSize));
+        for (Object[] row : rows.subList(0, Math.min(rows.size(), pageSize))) {
+            results.add(MessageSearchResultDto.builder()
+                    .messageId(((Number) row[0]).longValue())
+                    .chatId(((Number) row[1]).longValue())
+                    .senderId(((Number) row[2]).longValue())
+                    .senderUsername((String) row[3])
+                    .type(MessageType.valueOf((String) row[4]))
+                    .sentAt(NativeQueryValues.toInstant(row[5]))
+                    .rank(((Number) row[6]).doubleValue())
+                    .snippet(escapeSnippet((String) row[7]))
+                    .build());
+        }
+
+        return MessageSearchResponseDto.builder()
+                .results(results)
+                .page(pageNumber)
+                .size(pageSize)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // ts_headline не экранирует текст: экранируем все, кроме собственной разметки совпадений
+    private String escapeSnippet(String snippet) {
+        if (snippet == null) {
+            return null;
+        }
+        return HtmlUtils.htmlEscape(snippet)
+                .replace("&lt;mark&gt;", "<mark>")
+                .replace("&lt;/mark&gt;", "</mark>");
     }
 
     /**
@@ -393,22 +558,14 @@ public class ChatService {
         MessageEntity message = messageRepository.findById(requestDto.getMessageId())
                 .orElseThrow(() -> new RuntimeException("Сообщение не найдено"));
 
-        // Простая проверка доступа
-        boolean hasAccess = false;
-        for (UserEntity participant : message.getChat().getParticipants()) {
-            if (participant.getId().equals(requestDto.getUserId())) {
-                hasAccess = true;
-                break;
-            }
-        }
-
-        if (!hasAccess) {
+        if (!chatMembershipCache.isMember(message.getChat().getId(), requestDto.getUserId())) {
             throw new RuntimeException("Доступ запрещен");
         }
 
         // Просто меняем статус
         message.setStatus(MessageStatus.READ);
-        messageRepository.save(message);
+        MessageEntity savedMessage = messageRepository.save(message);
+        recentMessagesCache.update(chatServiceMapper.toMessageResponseDto(savedMessage));
     }
 
     /**
@@ -431,7 +588,9 @@ public class ChatService {
 
         MessageEntity updatedMessage = messageRepository.save(message);
 
-        return chatServiceMapper.toMessageResponseDto(updatedMessage);
+        MessageResponseDto response = chatServiceMapper.toMessageResponseDto(updatedMessage);
+        recentMessagesCache.update(response);
+        return response;
     }
 
     /**
@@ -440,7 +599,13 @@ public class ChatService {
     @Transactional
     public void deleteMessage(Long messageId) {
         log.info("Удаление сообщения ID: {}", messageId);
-        messageRepository.deleteById(messageId);
+
+        messageRepository.findById(messageId).ifPresent(message -> {
+            chatReadStateRepository.decrementUnread(
+                    message.getChat().getId(), message.getSender().getId(), messageId);
+            messageRepository.delete(message);
+            recentMessagesCache.remove(message.getChat().getId(), messageId);
+        });
     }
 
     /**
@@ -467,16 +632,7 @@ public class ChatService {
     @Transactional(readOnly = true)
     public boolean isUserParticipant(Long chatId, Long userId) {
         try {
-            ChatEntity chat = chatRepository.findById(chatId)
-                    .orElseThrow(() -> new RuntimeException("Чат не найден"));
-
-            for (UserEntity participant : chat.getParticipants()) {
-                if (participant.getId().equals(userId)) {
-                    return true;
-                }
-            }
-
-            return false;
+            return chatMembershipCache.isMember(chatId, userId);
         } catch (Exception e) {
             log.error("Ошибка проверки участника чата", e);
             return false;
@@ -484,26 +640,57 @@ public class ChatService {
     }
 
     /**
-     * Простая реализация пометки сообщений как прочитанных
+     * Пометить все сообщения чата прочитанными для пользователя
      */
     @Transactional
     public void markMessagesAsReadForUser(Long chatId, Long userId) {
-        try {
-            List<MessageEntity> messages = messageRepository.findAll();
-            for (MessageEntity message : messages) {
-                if (message.getChat() != null &&
-                        message.getChat().getId().equals(chatId) &&
-                        message.getSender() != null &&
-                        !message.getSender().getId().equals(userId) &&
-                        message.getStatus() != MessageStatus.READ) {
-
-                    message.setStatus(MessageStatus.READ);
-                    messageRepository.save(message);
-                }
-            }
-            log.info("Сообщения в чате {} помечены как прочитанные для пользователя {}", chatId, userId);
-        } catch (Exception e) {
-            log.warn("Не удалось пометить сообщения как прочитанные", e);
+        markChatAsRead(chatId, userId, null);
+    }
+
+    /**
+     * Пометить сообщения чата прочитанными до upToMessageId включительно.
+     * Обрабатываются только сообщения после прежней отметки, повторный вызов ничего не меняет.
+     */
+    @Transactional
+    public ReadWatermarkResponseDto markChatAsRead(Long chatId, Long userId, Long upToMessageId) {
+        if (!chatMembershipCache.isMember(chatId, userId)) {
+            throw new RuntimeException("Доступ запрещен");
         }
+
+        Long lastMessageId = chatRepository.findById(chatId)
+                .map(ChatEntity::getLastMessageId)
+                .orElseThrow(() -> new RuntimeException("Чат не найден"));
+        if (lastMessageId == null) {
+            lastMessageId = messageRepository.findMaxMessageId(chatId);
+        }
+
+        // Отметка не может уйти дальше последнего сообщения чата
+        Long upToId = upToMessageId == null || (lastMessageId != null && upToMessageId > lastMessageId)
+                ? lastMessageId
+                : upToMessageId;
+
+        // Прежняя отметка: все до нее уже отмечено, сканируем только хвост
+        long previousId = chatReadStateRepository.lockWatermark(chatId, userId).orElse(0L);
+
+        int marked = 0;
+        if (upToId != null && upToId > previousId) {
+            marked = messageRepository.insertReadReceiptsUpTo(chatId, userId, previousId, upToId);
+            messageRepository.markMessagesAsReadForUser(chatId, userId, previousId, upToId);
+            chatReadStateRepository.advanceWatermark(chatId, userId, upToId);
+            recentMessagesCache.markRead(chatId, userId, upToId);
+        } else if (upToId != null) {
+            upToId = previousId;
+        }
+
+        log.debug("Чат {} прочитан пользователем {} до сообщения {} (новых отметок: {})",
+                chatId, userId, upToId, marked);
+
+        return ReadWatermarkResponseDto.builder()
+                .chatId(chatId)
+                .userId(userId)
+                .lastReadMessageId(upToId)
+                .markedCount(marked)
+                .timestamp(Instant.now())
+                .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,250 @@
+package ru.messenger.chat_service.domain.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.messenger.chat_service.api.dto.MessageResponseDto;
+import ru.messenger.chat_service.domain.entity.enums.MessageStatus;
+import ru.messenger.chat_service.domain.entity.enums.MessageType;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронная запись сообщений из WebSocket.
+ * Сообщения попадают в ограниченную очередь, отдельный поток забирает их пачками и пишет
+ * одной транзакцией: batch INSERT в messages, одно обновление chats.last_message_id на чат
+ * и счетчики непрочитанных. После коммита сообщения рассылаются в чаты, отправителю - подтверждение.
+ * Если пачка не записалась, ее сообщения пишутся по одному, отказ получают только неудачные.
+ */
+@Slf4j
+@Component
+public class MessageIngestPipeline {
+
+    private static final String INSERT_MESSAGE_SQL =
+            "INSERT INTO messages (id, chat_id, sender_id, content, message_type, status, sent_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_LAST_MESSAGE_SQL =
+            "UPDATE chats SET last_message_id = GREATEST(COALESCE(last_message_id, 0), ?), updated_at = ? " +
+                    "WHERE id = ?";
+
+    private static final String INCREMENT_UNREAD_SQL =
+            "UPDATE chat_read_state SET unread_count = unread_count + ?, updated_at = CURRENT_TIMESTAMP " +
+                    "WHERE chat_id = ? AND user_id <> ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final RecentMessagesCache recentMessagesCache;
+    private final BlockingQueue<PendingMessage> queue;
+    private final int batchSize;
+    private final long maxWaitMs;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public MessageIngestPipeline(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 SimpMessagingTemplate messagingTemplate,
+                                 RecentMessagesCache recentMessagesCache,
+                                 @Value("${chat.ingest.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${chat.ingest.batch-size:500}") int batchSize,
+                                 @Value("${chat.ingest.max-wait-ms:5}") long maxWaitMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.recentMessagesCache = recentMessagesCache;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    /**
+     * Сообщение, ожидающее записи
+     */
+    public record PendingMessage(Long chatId, Long senderId, String senderLogin, String senderUsername,
+                                 String content, MessageType type, String clientMessageId, Instant sentAt) {
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::runWriter, "message-ingest-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // Поток сам выйдет из цикла, дописав остаток очереди (ожидание в poll ограничено)
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Поставить сообщение в очередь. false - очередь переполнена, клиент должен повторить позже.
+     */
+    public boolean submit(PendingMessage message) {
+        return queue.offer(message);
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void runWriter() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+
+        // После остановки дописываем то, что осталось в очереди
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Даем очереди немного накопиться, чтобы писать крупнее
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    if (batch.size() >= batchSize || System.nanoTime() >= deadline) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejectAll(batch, "Сервер останавливается, сообщение не сохранено");
+                break;
+            } catch (Exception e) {
+                // Ошибки записи обрабатываются в writeBatch, сюда доходят только ошибки рассылки
+                log.error("Ошибка рассылки пачки сообщений ({} шт.)", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+        log.info("Поток записи сообщений остановлен");
+    }
+
+    private void writeBatch(List<PendingMessage> batch) {
+        List<MessageResponseDto> saved;
+        try {
+            saved = transactionTemplate.execute(status -> insertBatch(batch));
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                log.warn("Не удалось сохранить сообщение в чат {} от {}",
+                        batch.get(0).chatId(), batch.get(0).senderLogin(), e);
+                rejectAll(batch, "Не удалось сохранить сообщение");
+                return;
+            }
+            // Одна ошибочная строка (например, чат удален) не должна отклонять всю пачку
+            log.warn("Ошибка записи пачки сообщений ({} шт.), запись по одному", batch.size(), e);
+            for (PendingMessage pending : batch) {
+                writeBatch(List.of(pending));
+            }
+            return;
+        }
+
+        for (MessageResponseDto message : saved) {
+            recentMessagesCache.append(message);
+            messagingTemplate.convertAndSend("/topic/chat." + message.getChatId(), message);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PendingMessage pending = batch.get(i);
+            messagingTemplate.convertAndSendToUser(
+                    pending.senderLogin(),
+                    "/queue/acks",
+                    Map.of(
+                            "clientMessageId", String.valueOf(pending.clientMessageId()),
+                            "messageId", saved.get(i).getId(),
+                            "chatId", pending.chatId()
+                    )
+            );
+        }
+
+        log.debug("Записано сообщений: {}, в очереди: {}", batch.size(), queue.size());
+    }
+
+    private List<MessageResponseDto> insertBatch(List<PendingMessage> batch) {
+        List<Long> ids = allocateIds(batch.size());
+
+        List<Object[]> messageRows = new ArrayList<>(batch.size());
+        List<MessageResponseDto> saved = new ArrayList<>(batch.size());
+        Map<Long, Long> lastMessageByChat = new HashMap<>();
+        Map<List<Long>, Integer> unreadByChatAndSender = new HashMap<>();
+
+        for (int i = 0; i < batch.size(); i++) {
+            PendingMessage pending = batch.get(i);
+            Long id = ids.get(i);
+
+            messageRows.add(new Object[]{
+                    id, pending.chatId(), pending.senderId(), pending.content(),
+                    pending.type().name(), MessageStatus.SENT.name(), Timestamp.from(pending.sentAt())
+            });
+            lastMessageByChat.merge(pending.chatId(), id, Math::max);
+            unreadByChatAndSender.merge(List.of(pending.chatId(), pending.senderId()), 1, Integer::sum);
+
+            MessageResponseDto dto = new MessageResponseDto(id, pending.chatId(), pending.senderId(),
+                    pending.senderUsername(), pending.content(), pending.type(), MessageStatus.SENT, pending.sentAt());
+            dto.setClientMessageId(pending.clientMessageId());
+            saved.add(dto);
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL, messageRows);
+
+        // Одно обновление last_message_id на чат вместо одного на сообщение
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> chatRows = new ArrayList<>(lastMessageByChat.size());
+        lastMessageByChat.forEach((chatId, lastId) -> chatRows.add(new Object[]{lastId, now, chatId}));
+        jdbcTemplate.batchUpdate(UPDATE_LAST_MESSAGE_SQL, chatRows);
+
+        List<Object[]> unreadRows = new ArrayList<>(unreadByChatAndSender.size());
+        unreadByChatAndSender.forEach((key, count) -> unreadRows.add(new Object[]{count, key.get(0), key.get(1)}));
+        jdbcTemplate.batchUpdate(INCREMENT_UNREAD_SQL, unreadRows);
+
+        return saved;
+    }
+
+    /**
+     * Выделить id: один nextval на сообщение, как у JPA (allocationSize = 1), поэтому id
+     * сообщений из пайплайна и из ChatService.sendMessage идут в порядке выделения
+     */
+    private List<Long> allocateIds(int count) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT nextval('messages_id_seq') FROM generate_series(1, ?)", Long.class, count);
+        // Пачка пишется в порядке очереди - ей и раздаются id по возрастанию
+        ids.sort(null);
+        return ids;
+    }
+
+    private void rejectAll(List<PendingMessage> batch, String error) {
+        for (PendingMessage pending : batch) {
+            try {
+                messagingTemplate.convertAndSendToUser(
+                        pending.senderLogin(),
+                        "/queue/errors",
+                        Map.of("error", error, "clientMessageId", String.valueOf(pending.clientMessageId()))
+                );
+            } catch (Exception e) {
+                log.warn("Не удалось уведомить {} об ошибке отправки", pending.senderLogin(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package ru.messenger.chat_service.domain.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.messenger.chat_service.api.dto.MessageResponseDto;
+import ru.messenger.chat_service.domain.entity.enums.MessageStatus;
+
+import java.util.*;
+
+/**
+ * Кэш последних сообщений "горячих" чатов.
+ * Для чата хранится кольцевой буфер последних N сообщений (по возрастанию id) и общее число
+ * сообщений, этого хватает для первой страницы без запроса к БД. Общий объем ограничен
+ * числом сообщений во всех буферах, при превышении вытесняются давно не читанные чаты (LRU).
+ * Изменения применяются после коммита; загрузка, пересекшаяся с изменением, в кэш не попадает.
+ * При chat.broker.mode=relay кэш выключен: сообщения, записанные другими узлами, в буфер не попадают.
+ */
+@Slf4j
+@Component
+public class RecentMessagesCache {
+
+    // Счетчики версий по секциям чатов (для отбраковки устаревших загрузок)
+    private static final int VERSION_STRIPES = 1024;
+
+    private final int messagesPerChat;
+    private final int maxMessages;
+    private final boolean enabled;
+    private final Map<Long, Buffer> buffers;
+    private final long[] versions = new long[VERSION_STRIPES];
+    private long cachedMessages;
+
+    public RecentMessagesCache(@Value("${chat.recent-cache.messages-per-chat:50}") int messagesPerChat,
+                               @Value("${chat.recent-cache.max-messages:200000}") int maxMessages,
+                               @Value("${chat.broker.mode:simple}") String brokerMode) {
+        this.messagesPerChat = messagesPerChat;
+        this.maxMessages = maxMessages;
+        this.enabled = !"relay".equalsIgnoreCase(brokerMode);
+        this.buffers = new LinkedHashMap<>(256, 0.75f, true);
+    }
+
+    /**
+     * Последние сообщения чата из кэша
+     */
+    public record Snapshot(List<MessageResponseDto> messages, long totalCount) {
+    }
+
+    public int getMessagesPerChat() {
+        return messagesPerChat;
+    }
+
+    /**
+     * Последние limit сообщений чата (от новых к старым) или null, если кэш не может ответить
+     */
+    public Snapshot get(Long chatId, int limit) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (buffers) {
+            Buffer buffer = buffers.get(chatId);
+            if (buffer == null || (limit > buffer.size && buffer.size < buffer.totalCount)) {
+                return null;
+            }
+
+            int count = Math.min(limit, buffer.size);
+            List<MessageResponseDto> messages = new ArrayList<>(count);
+            for (int i = buffer.size - 1; i >= buffer.size - count; i--) {
+                messages.add(copy(buffer.get(i)));
+            }
+            return new Snapshot(messages, buffer.totalCount);
+        }
+    }
+
+    /**
+     * Отметка перед загрузкой из БД, передается в fill
+     */
+    public long loadToken(Long chatId) {
+        synchronized (buffers) {
+            return versions[stripe(chatId)];
+        }
+    }
+
+    /**
+     * Положить в кэш загруженные из БД последние сообщения чата.
+     * Если с момента loadToken чат менялся, данные могли устареть и отбрасываются.
+     */
+    public void fill(Long chatId, List<MessageResponseDto> latest, long totalCount, long token) {
+        if (!enabled) {
+            return;
+        }
+        List<MessageResponseDto> sorted = new ArrayList<>(latest);
+        sorted.sort(Comparator.comparing(MessageResponseDto::getId));
+
+        synchronized (buffers) {
+            if (versions[stripe(chatId)] != token) {
+                return;
+            }
+
+            Buffer buffer = new Buffer(messagesPerChat);
+            buffer.totalCount = totalCount;
+            int from = Math.max(0, sorted.size() - messagesPerChat);
+            for (int i = from; i < sorted.size(); i++) {
+                buffer.add(copy(sorted.get(i)));
+            }
+
+            Buffer previous = buffers.put(chatId, buffer);
+            if (previous != null) {
+                cachedMessages -= previous.size;
+            }
+            cachedMessages += buffer.size;
+            evictOverBudget();
+        }
+        log.debug("Последние сообщения чата {} загружены в кэш", chatId);
+    }
+
+    /**
+     * Новое сообщение
+     */
+    public void append(MessageResponseDto message) {
+        MessageResponseDto cached = copy(message);
+        cached.setClientMessageId(null);
+        if (cached.getReadBy() == null) {
+            cached.setReadBy(new HashSet<>());
+        }
+        afterCommit(() -> {
+            synchronized (buffers) {
+                versions[stripe(cached.getChatId())]++;
+                Buffer buffer = buffers.get(cached.getChatId());
+                if (buffer != null) {
+                    cachedMessages += buffer.add(cached);
+                    buffer.totalCount++;
+                    evictOverBudget();
+                }
+            }
+        });
+    }
+
+    /**
+     * Измененное сообщение
+     */
+    public void update(MessageResponseDto message) {
+        MessageResponseDto cached = copy(message);
+        cached.setClientMessageId(null);
+        afterCommit(() -> {
+            synchronized (buffers) {
+                versions[stripe(cached.getChatId())]++;
+                Buffer buffer = buffers.get(cached.getChatId());
+                if (buffer != null) {
+                    int index = buffer.indexOf(cached.getId());
+                    if (index >= 0) {
+                        buffer.set(index, cached);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Удаленное сообщение
+     */
+    public void remove(Long chatId, Long messageId) {
+        afterCommit(() -> {
+            synchronized (buffers) {
+                versions[stripe(chatId)]++;
+                Buffer buffer = buffers.get(chatId);
+                if (buffer != null) {
+                    if (buffer.remove(messageId)) {
+                        cachedMessages--;
+                    }
+                    buffer.totalCount = Math.max(0, buffer.totalCount - 1);
+                }
+            }
+        });
+    }
+
+    /**
+     * Пользователь прочитал чат до upToId включительно
+     */
+    public void markRead(Long chatId, Long readerId, Long upToId) {
+        afterCommit(() -> {
+            synchronized (buffers) {
+                versions[stripe(chatId)]++;
+                Buffer buffer = buffers.get(chatId);
+                if (buffer == null) {
+                    return;
+                }
+                for (int i = 0; i < buffer.size; i++) {
+                    MessageResponseDto message = buffer.get(i);
+                    if (message.getId() > upToId) {
+                        break;
+                    }
+                    if (!readerId.equals(message.getSenderId())) {
+                        message.setStatus(MessageStatus.READ);
+                        if (message.getReadBy() != null) {
+                            message.getReadBy().add(readerId);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Сбросить чат целиком
+     */
+    public void invalidate(Long chatId) {
+        afterCommit(() -> {
+            synchronized (buffers) {
+                versions[stripe(chatId)]++;
+                Buffer buffer = buffers.remove(chatId);
+                if (buffer != null) {
+                    cachedMessages -= buffer.size;
+                }
+            }
+        });
+    }
+
+    private void evictOverBudget() {
+        Iterator<Buffer> it = buffers.values().iterator();
+        while (cachedMessages > maxMessages && it.hasNext()) {
+            cachedMessages -= it.next().size;
+            it.remove();
+        }
+    }
+
+    // Внутри транзакции изменение применяется только после коммита
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private int stripe(Long chatId) {
+        return (int) Math.floorMod(chatId, (long) VERSION_STRIPES);
+    }
+
+    private MessageResponseDto copy(MessageResponseDto source) {
+        MessageResponseDto copy = new MessageResponseDto(source.getId(), source.getChatId(), source.getSenderId(),
+                source.getSenderUsername(), source.getContent(), source.getType(), source.getStatus(),
+                source.getSentAt());
+        copy.setReadBy(source.getReadBy() != null ? new HashSet<>(source.getReadBy()) : null);
+        copy.setAttachments(source.getAttachments() != null ? new HashSet<>(source.getAttachments()) : null);
+        copy.setClientMessageId(source.getClientMessageId());
+        return copy;
+    }
+
+    /**
+     * Кольцевой буфер сообщений по возрастанию id
+     */
+    private static class Buffer {
+        private final MessageResponseDto[] ring;
+        private int head;
+        private int size;
+        private long totalCount;
+
+        private Buffer(int capacity) {
+            this.ring = new MessageResponseDto[capacity];
+        }
+
+        private MessageResponseDto get(int index) {
+            return ring[(head + index) % ring.length];
+        }
+
+        private void set(int index, MessageResponseDto message) {
+            ring[(head + index) % ring.length] = message;
+        }
+
+        /**
+         * Добавить сообщение, вытеснив самое старое. Возвращает изменение числа сообщений в буфере.
+         */
+        private int add(MessageResponseDto message) {
+            int delta = 1;
+            if (size == ring.length) {
+                // Старше всего окна - в буфер не попадает
+                if (message.getId() < get(0).getId()) {
+                    return 0;
+                }
+                set(0, null);
+                head = (head + 1) % ring.length;
+                size--;
+                delta = 0;
+            }
+
+            // Обычно сообщение новее всех и встает в конец
+            int position = size;
+            while (position > 0 && get(position - 1).getId() > message.getId()) {
+                set(position, get(position - 1));
+                position--;
+            }
+            set(position, message);
+            size++;
+            return delta;
+        }
+
+        private int indexOf(Long messageId) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (get(i).getId().equals(messageId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean remove(Long messageId) {
+            int index = indexOf(messageId);
+            if (index < 0) {
+                return false;
+            }
+            for (int i = index; i < size - 1; i++) {
+                set(i, get(i + 1));
+            }
+            set(size - 1, null);
+            size--;
+            return true;
+        }
+    }
+}
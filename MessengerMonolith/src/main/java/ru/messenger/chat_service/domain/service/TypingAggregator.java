@@ -0,0 +1,109 @@
+package ru.messenger.chat_service.domain.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.messenger.chat_service.api.dto.ChatTypingResponseDto;
+import ru.messenger.chat_service.api.dto.TypingStatusResponseDto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Агрегатор статусов "печатает".
+ * Кадры от клиентов только меняют состояние в памяти; раз в интервал по каждому изменившемуся
+ * чату уходит один кадр со списком всех печатающих. Статус истекает сам, если клиент замолчал.
+ */
+@Slf4j
+@Component
+public class TypingAggregator {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long ttlMs;
+    private final Map<Long, ChatTyping> chats = new ConcurrentHashMap<>();
+
+    public TypingAggregator(SimpMessagingTemplate messagingTemplate,
+                            @Value("${chat.typing.ttl-ms:3000}") long ttlMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Обновить статус пользователя. Повторное "печатает" только продлевает срок и кадра не вызывает.
+     */
+    public void update(Long chatId, Long userId, String username, boolean isTyping) {
+        // Под блокировкой записи карты: flush не может удалить чат между проверкой и изменением
+        chats.compute(chatId, (id, typing) -> {
+            if (isTyping) {
+                if (typing == null) {
+                    typing = new ChatTyping();
+                }
+                TypingUser previous = typing.users.put(userId,
+                        new TypingUser(username, System.currentTimeMillis() + ttlMs));
+                if (previous == null) {
+                    typing.dirty = true;
+                }
+            } else if (typing != null && typing.users.remove(userId) != null) {
+                typing.dirty = true;
+            }
+            return typing;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${chat.typing.flush-interval-ms:500}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<Long, ChatTyping> entry : chats.entrySet()) {
+            ChatTyping typing = entry.getValue();
+
+            // Истекшие статусы
+            if (typing.users.values().removeIf(user -> user.expiresAt() < now)) {
+                typing.dirty = true;
+            }
+
+            if (typing.dirty) {
+                typing.dirty = false;
+                send(entry.getKey(), typing);
+            } else {
+                // Проверка и удаление атомарны относительно update
+                chats.computeIfPresent(entry.getKey(), (id, current) ->
+                        current.users.isEmpty() && !current.dirty ? null : current);
+            }
+        }
+    }
+
+    private void send(Long chatId, ChatTyping typing) {
+        Instant timestamp = Instant.now();
+        List<TypingStatusResponseDto> users = new ArrayList<>(typing.users.size());
+        typing.users.forEach((userId, user) -> users.add(TypingStatusResponseDto.builder()
+                .chatId(chatId)
+                .userId(userId)
+                .username(user.username())
+                .isTyping(true)
+                .timestamp(timestamp)
+                .build()));
+
+        messagingTemplate.convertAndSend(
+                "/topic/chat." + chatId + ".typing",
+                ChatTypingResponseDto.builder()
+                        .chatId(chatId)
+                        .typingUsers(users)
+                        .timestamp(timestamp)
+                        .build()
+        );
+    }
+
+    private record TypingUser(String username, long expiresAt) {
+    }
+
+    private static class ChatTyping {
+        private final Map<Long, TypingUser> users = new ConcurrentHashMap<>();
+        private volatile boolean dirty;
+    }
+}
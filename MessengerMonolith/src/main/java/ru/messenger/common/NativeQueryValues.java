@@ -0,0 +1,34 @@
+package ru.messenger.common;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+/**
+ * Преобразование значений из строк нативных запросов (List<Object[]>)
+ */
+public final class NativeQueryValues {
+
+    private NativeQueryValues() {
+    }
+
+    /**
+     * Время из нативного запроса: в зависимости от драйвера и типа колонки приходит
+     * Instant, Timestamp или OffsetDateTime
+     */
+    public static Instant toInstant(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Instant instant) {
+            return instant;
+        }
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toInstant();
+        }
+        if (value instanceof OffsetDateTime dateTime) {
+            return dateTime.toInstant();
+        }
+        throw new RuntimeException("Неизвестный тип времени: " + value.getClass());
+    }
+}
@@ -0,0 +1,52 @@
+package ru.messenger.config_service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import ru.messenger.user_service.domain.service.UserIdentity;
+import ru.messenger.user_service.domain.service.UserIdentityCache;
+
+import java.security.Principal;
+
+/**
+ * Разрешает пользователя один раз при STOMP CONNECT:
+ * id и имя кладутся в атрибуты сессии, обработчики кадров читают их оттуда без обращения к БД.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StompIdentityInterceptor implements ChannelInterceptor {
+
+    private final UserIdentityCache userIdentityCache;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+            return message;
+        }
+
+        Principal principal = accessor.getUser();
+        if (principal == null) {
+            return message;
+        }
+
+        try {
+            UserIdentity identity = userIdentityCache.get(principal.getName());
+            if (accessor.getSessionAttributes() != null) {
+                accessor.getSessionAttributes().put(UserIdentityCache.SESSION_ATTRIBUTE, identity);
+            }
+            log.debug("STOMP CONNECT: {} -> userId {}", principal.getName(), identity.getId());
+        } catch (Exception e) {
+            log.warn("STOMP CONNECT: не удалось определить пользователя {}", principal.getName(), e);
+        }
+
+        return message;
+    }
+}
@@ -0,0 +1,107 @@
+package ru.messenger.config_service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики каналов STOMP: число обработанных сообщений, задачи в работе,
+ * глубина очереди пула и время обработчиков. Периодически пишутся в лог.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebSocketChannelMetrics {
+
+    private final ApplicationContext applicationContext;
+
+    private final ChannelStats inbound = new ChannelStats("clientInboundChannelExecutor");
+    private final ChannelStats outbound = new ChannelStats("clientOutboundChannelExecutor");
+
+    public ChannelStats inbound() {
+        return inbound;
+    }
+
+    public ChannelStats outbound() {
+        return outbound;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.websocket.metrics.log-interval-ms:60000}")
+    public void logStats() {
+        log(inbound, "входящий");
+        log(outbound, "исходящий");
+    }
+
+    private void log(ChannelStats stats, String name) {
+        long handled = stats.handled.sumThenReset();
+        long totalNanos = stats.totalNanos.getAndSet(0);
+        long maxNanos = stats.maxNanos.getAndSet(0);
+
+        if (handled == 0 && stats.active.get() == 0) {
+            return;
+        }
+
+        log.info("STOMP {} канал: обработано {}, в работе {}, в очереди {}, среднее {} мс, максимум {} мс",
+                name, handled, stats.active.get(), queueSize(stats.executorBeanName),
+                handled > 0 ? TimeUnit.NANOSECONDS.toMillis(totalNanos / handled) : 0,
+                TimeUnit.NANOSECONDS.toMillis(maxNanos));
+    }
+
+    // Очередь есть только у пула платформенных потоков; у виртуальных потоков задачи не ждут
+    private int queueSize(String executorBeanName) {
+        Object executor = applicationContext.getBean(executorBeanName);
+        return executor instanceof ThreadPoolTaskExecutor pool ? pool.getQueueSize() : 0;
+    }
+
+    /**
+     * Перехватчик канала, замеряющий время обработчиков
+     */
+    public static class ChannelStats implements ExecutorChannelInterceptor {
+
+        private final String executorBeanName;
+        private final ThreadLocal<Long> startedAt = new ThreadLocal<>();
+        private final LongAdder handled = new LongAdder();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicInteger active = new AtomicInteger();
+
+        ChannelStats(String executorBeanName) {
+            this.executorBeanName = executorBeanName;
+        }
+
+        @Override
+        public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+            active.incrementAndGet();
+            startedAt.set(System.nanoTime());
+            return message;
+        }
+
+        @Override
+        public void afterMessageHandled(Message<?> message, MessageChannel channel,
+                                        MessageHandler handler, Exception ex) {
+            Long start = startedAt.get();
+            startedAt.remove();
+            active.decrementAndGet();
+            if (start == null) {
+                return;
+            }
+
+            long elapsed = System.nanoTime() - start;
+            handled.increment();
+            totalNanos.addAndGet(elapsed);
+            maxNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+}
@@ -1,29 +1,111 @@
 package ru.messenger.config_service;
 
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompIdentityInterceptor stompIdentityInterceptor;
+    private final WebSocketChannelMetrics channelMetrics;
+
+    // platform - пул обычных потоков, virtual - виртуальный поток на каждое сообщение
+    @Value("${chat.websocket.executor:platform}")
+    private String executorMode;
+
+    @Value("${chat.websocket.inbound.core-pool-size:16}")
+    private int inboundCorePoolSize;
+
+    @Value("${chat.websocket.inbound.max-pool-size:64}")
+    private int inboundMaxPoolSize;
+
+    @Value("${chat.websocket.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${chat.websocket.outbound.core-pool-size:16}")
+    private int outboundCorePoolSize;
+
+    @Value("${chat.websocket.outbound.max-pool-size:64}")
+    private int outboundMaxPoolSize;
+
+    @Value("${chat.websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${chat.websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${chat.websocket.transport.send-time-limit-ms:15000}")
+    private int sendTimeLimitMs;
+
+    @Value("${chat.websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    // simple - брокер в памяти (один узел), relay - внешний STOMP-брокер (RabbitMQ/ActiveMQ), несколько узлов
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${chat.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${chat.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${chat.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${chat.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${chat.broker.relay.virtual-host:/}")
+    private String relayVirtualHost;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        // Включаем брокер сообщений в памяти
-        registry.enableSimpleBroker(
-                "/topic",  // Для всех в чате
-                "/queue",  // Для приватных сообщений
-                "/user"    // Для сообщений конкретному пользователю
-        );
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            log.info("STOMP: внешний брокер {}:{}", relayHost, relayPort);
+
+            // Рассылка /topic и /queue идет через общий брокер - сообщения доходят до клиентов всех узлов
+            registry.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setVirtualHost(relayVirtualHost)
+                    // Сообщение пользователю, подключенному к другому узлу, пересылается через брокер
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    // Узлы обмениваются списками своих пользователей/сессий
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+        } else {
+            // Включаем брокер сообщений в памяти
+            registry.enableSimpleBroker(
+                    "/topic",  // Для всех в чате
+                    "/queue",  // Для приватных сообщений
+                    "/user"    // Для сообщений конкретному пользователю
+            );
+        }
 
         // Префикс для отправки сообщений на сервер
         registry.setApplicationDestinationPrefixes("/app");
 
         // Префикс для личных сообщений
         registry.setUserDestinationPrefix("/user");
+
+        // Исходящий канал обрабатывается пулом - сохраняем порядок сообщений в каждой сессии
+        registry.setPreservePublishOrder(true);
     }
 
     @Override
@@ -36,5 +118,50 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                         "http://localhost"         // Без порта
                 )
                 .withSockJS();  // Fallback для старых браузеров
+
+        // Входящие кадры одной сессии обрабатываются по порядку (печатает/перестал печатать)
+        registry.setPreserveReceiveOrder(true);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Медленный клиент не должен держать поток и память сервера
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setSendTimeLimit(sendTimeLimitMs)
+                .setMessageSizeLimit(messageSizeLimit);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Определяем пользователя один раз при CONNECT
+        registration.interceptors(stompIdentityInterceptor, channelMetrics.inbound());
+
+        if (isVirtualThreads()) {
+            // Блокирующие вызовы JPA в обработчиках не занимают потоки пула
+            registration.executor(new VirtualThreadTaskExecutor("ws-inbound-"));
+        } else {
+            registration.taskExecutor()
+                    .corePoolSize(inboundCorePoolSize)
+                    .maxPoolSize(inboundMaxPoolSize)
+                    .queueCapacity(inboundQueueCapacity);
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(channelMetrics.outbound());
+
+        if (isVirtualThreads()) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-outbound-"));
+        } else {
+            registration.taskExecutor()
+                    .corePoolSize(outboundCorePoolSize)
+                    .maxPoolSize(outboundMaxPoolSize)
+                    .queueCapacity(outboundQueueCapacity);
+        }
+    }
+
+    private boolean isVirtualThreads() {
+        return "virtual".equalsIgnoreCase(executorMode);
     }
-}
\ No newline at end of file
+}
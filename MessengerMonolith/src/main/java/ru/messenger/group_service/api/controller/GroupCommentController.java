@@ -11,9 +11,12 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import ru.messenger.group_service.api.dto.request.GroupCommentCreateRequestDto;
 import ru.messenger.group_service.api.dto.response.GroupCommentResponseDto;
+import ru.messenger.group_service.api.dto.response.GroupCommentThreadResponseDto;
 import ru.messenger.group_service.domain.service.GroupCommentService;
 import ru.messenger.user_service.domain.service.UserService;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1/groups/posts/{postId}/comments")
 @RequiredArgsConstructor
@@ -58,6 +61,29 @@ public class GroupCommentController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Получить ветки комментариев к посту с первыми ответами
+     *
+     * @param postId ID поста
+     * @param page номер страницы корневых комментариев
+     * @param size количество веток на странице
+     * @param replies количество ответов в каждой ветке
+     * @param userDetails информация о текущем пользователе
+     * @return список веток
+     */
+    @GetMapping("/threads")
+    public ResponseEntity<List<GroupCommentThreadResponseDto>> getCommentThreads(
+            @PathVariable Long postId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "3") int replies,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = userService.getCurrentUserId(userDetails);
+        List<GroupCommentThreadResponseDto> response =
+                groupCommentService.getCommentThreads(postId, userId, page, size, replies);
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Обновить комментарий
      *
@@ -5,24 +5,31 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import ru.messenger.group_service.api.dto.request.GroupCreateRequestDto;
 import ru.messenger.group_service.api.dto.request.GroupUpdateRequestDto;
+import ru.messenger.group_service.api.dto.response.GroupActivityDayResponseDto;
 import ru.messenger.group_service.api.dto.response.GroupMemberResponseDto;
 import ru.messenger.group_service.api.dto.response.GroupResponseDto;
 import ru.messenger.group_service.domain.entity.enums.GroupType;
 import ru.messenger.group_service.domain.service.GroupService;
+import ru.messenger.group_service.domain.service.GroupStatisticsService;
 import ru.messenger.user_service.domain.service.UserService;
 
+import java.time.LocalDate;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1/groups")
 @RequiredArgsConstructor
 public class GroupController {
 
     private final GroupService groupService;
+    private final GroupStatisticsService groupStatisticsService;
     private final UserService userService;
 
     /**
@@ -246,6 +253,27 @@ public class GroupController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Получить дневную активность группы
+     *
+     * @param groupId ID группы
+     * @param from первый день периода (по умолчанию - 30 дней назад)
+     * @param to последний день периода (по умолчанию - сегодня)
+     * @param userDetails информация о текущем пользователе
+     * @return ряд по дням без пропусков
+     */
+    @GetMapping("/{groupId}/activity")
+    public ResponseEntity<List<GroupActivityDayResponseDto>> getGroupActivity(
+            @PathVariable Long groupId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = userService.getCurrentUserId(userDetails);
+        List<GroupActivityDayResponseDto> response =
+                groupStatisticsService.getGroupActivitySeries(groupId, from, to, userId);
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Поиск групп по названию или описанию
      *
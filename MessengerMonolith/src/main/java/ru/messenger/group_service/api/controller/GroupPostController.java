@@ -10,6 +10,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import ru.messenger.group_service.api.dto.request.GroupPostCreateRequestDto;
+import ru.messenger.group_service.api.dto.response.GroupFeedResponseDto;
 import ru.messenger.group_service.api.dto.response.GroupPostResponseDto;
 import ru.messenger.group_service.domain.service.GroupPostService;
 import ru.messenger.user_service.domain.service.UserService;
@@ -88,6 +89,24 @@ public class GroupPostController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Получить ленту постов с курсорной пагинацией
+     *
+     * @param cursor курсор из предыдущего ответа (null для первой страницы)
+     * @param limit размер страницы
+     * @param userDetails информация о текущем пользователе
+     * @return посты ленты и курсор следующей страницы
+     */
+    @GetMapping("/feed/timeline")
+    public ResponseEntity<GroupFeedResponseDto> getTimeline(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = userService.getCurrentUserId(userDetails);
+        GroupFeedResponseDto response = groupPostService.getUserTimeline(userId, cursor, limit);
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Обновить пост
      *
@@ -138,6 +157,38 @@ public class GroupPostController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Поставить лайк на пост (повторный вызов ничего не меняет)
+     *
+     * @param postId ID поста
+     * @param userDetails информация о текущем пользователе
+     * @return информация о посте
+     */
+    @PutMapping("/{postId}/like")
+    public ResponseEntity<GroupPostResponseDto> likePost(
+            @PathVariable Long postId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = userService.getCurrentUserId(userDetails);
+        GroupPostResponseDto response = groupPostService.setLike(postId, userId, true);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Убрать лайк с поста (повторный вызов ничего не меняет)
+     *
+     * @param postId ID поста
+     * @param userDetails информация о текущем пользователе
+     * @return информация о посте
+     */
+    @DeleteMapping("/{postId}/like")
+    public ResponseEntity<GroupPostResponseDto> unlikePost(
+            @PathVariable Long postId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = userService.getCurrentUserId(userDetails);
+        GroupPostResponseDto response = groupPostService.setLike(postId, userId, false);
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Получить посты определенного типа в группе
      *
@@ -177,4 +228,24 @@ public class GroupPostController {
         Page<GroupPostResponseDto> response = groupPostService.getPostsByAuthor(targetAuthorId, currentUserId, pageable);
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Получить посты пользователя во всех группах с курсорной пагинацией
+     *
+     * @param authorId ID автора
+     * @param cursor курсор из предыдущего ответа (null для первой страницы)
+     * @param limit размер страницы
+     * @param userDetails информация о текущем пользователе
+     * @return посты автора и курсор следующей страницы
+     */
+    @GetMapping("/author/{authorId}/timeline")
+    public ResponseEntity<GroupFeedResponseDto> getPostsByAuthorTimeline(
+            @PathVariable Long authorId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        Long currentUserId = userService.getCurrentUserId(userDetails);
+        GroupFeedResponseDto response = groupPostService.getPostsByAuthorTimeline(authorId, currentUserId, cursor, limit);
+        return ResponseEntity.ok(response);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package ru.messenger.group_service.api.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupActivityDayResponseDto {
+    private LocalDate day;
+    private long posts;
+    private long comments;
+    private long likes;
+    private long joins;
+    private long leaves;
+    private long activeMembers;
+}
@@ -0,0 +1,23 @@
+package ru.messenger.group_service.api.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupCommentThreadResponseDto {
+
+    private GroupCommentResponseDto comment;
+
+    // Первые ответы ветки (на любом уровне вложенности) по времени
+    private List<GroupCommentResponseDto> replies;
+
+    // Всего ответов в ветке
+    private long totalReplies;
+}
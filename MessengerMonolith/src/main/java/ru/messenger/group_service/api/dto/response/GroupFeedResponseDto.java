@@ -0,0 +1,22 @@
+package ru.messenger.group_service.api.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupFeedResponseDto {
+
+    private List<GroupPostResponseDto> posts;
+
+    // Курсор следующей страницы (null, если продолжать нечего)
+    private String nextCursor;
+
+    private boolean hasMore;
+}
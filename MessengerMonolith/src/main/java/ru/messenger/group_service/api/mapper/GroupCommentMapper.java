@@ -33,7 +33,7 @@ public interface GroupCommentMapper {
     @Mapping(target = "content", source = "content")
     @Mapping(target = "parentCommentId", source = "parentComment.id")
     @Mapping(target = "likesCount", source = "likesCount")
-    @Mapping(target = "repliesCount", expression = "java(calculateRepliesCount(entity))")
+    @Mapping(target = "repliesCount", source = "repliesCount")
     @Mapping(target = "likedByMe", ignore = true) // Заполняется отдельно
     @Mapping(target = "createdAt", source = "createdAt")
     @Mapping(target = "updatedAt", source = "updatedAt")
@@ -93,20 +93,6 @@ public interface GroupCommentMapper {
 
     // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
 
-    /**
-     * Вычислить количество ответов на комментарий
-     * Этот метод будет использоваться в expression в @Mapping
-     */
-    default Integer calculateRepliesCount(GroupPostCommentEntity entity) {
-        if (entity == null || entity.getReplies() == null) {
-            return 0;
-        }
-        // Считаем только активные (не удаленные) ответы
-        return (int) entity.getReplies().stream()
-                .filter(reply -> !"[Комментарий удален]".equals(reply.getContent()))
-                .count();
-    }
-
     /**
      * Создать DTO с минимальной информацией (для оптимизации)
      */
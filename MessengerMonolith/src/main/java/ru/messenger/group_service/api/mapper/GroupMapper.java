@@ -46,6 +46,7 @@ public interface GroupMapper {
     @Mapping(target = "invites", ignore = true)
     @Mapping(target = "membersCount", constant = "1")
     @Mapping(target = "postsCount", constant = "0")
+    @Mapping(target = "feedPull", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
     GroupEntity toEntity(GroupCreateRequestDto dto);
@@ -60,6 +61,7 @@ public interface GroupMapper {
     @Mapping(target = "invites", ignore = true)
     @Mapping(target = "membersCount", ignore = true)
     @Mapping(target = "postsCount", ignore = true)
+    @Mapping(target = "feedPull", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
     void updateEntity(GroupUpdateRequestDto dto, @MappingTarget GroupEntity entity);
@@ -51,14 +51,21 @@ public class GroupEntity {
     @Column(name = "is_public", nullable = false)
     private Boolean isPublic;
 
-    @Column(name = "members_count", nullable = false)
+    // Счетчики меняются только атомарным UPDATE в репозитории, сохранение сущности их не перезаписывает
+    @Column(name = "members_count", nullable = false, updatable = false)
     @Builder.Default
     private Integer membersCount = 1;
 
-    @Column(name = "posts_count", nullable = false)
+    @Column(name = "posts_count", nullable = false, updatable = false)
     @Builder.Default
     private Integer postsCount = 0;
 
+    // Посты группы не раскладываются по лентам, а читаются при запросе.
+    // Ставится, когда группа впервые выросла за group.feed.fan-out-max-members, и не снимается
+    @Column(name = "feed_pull", nullable = false, updatable = false)
+    @Builder.Default
+    private Boolean feedPull = false;
+
     @OneToMany(mappedBy = "group", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private Set<GroupMemberEntity> members = new HashSet<>();
@@ -83,12 +90,20 @@ public class GroupEntity {
         return owner.getId().equals(userId);
     }
 
+    /**
+     * @deprecated загружает всех участников группы, используйте {@code GroupAccessService.isAdmin}
+     */
+    @Deprecated
     public boolean isAdmin(Long userId) {
         return members.stream()
                 .filter(member -> member.getUser().getId().equals(userId))
                 .anyMatch(GroupMemberEntity::getIsAdmin);
     }
 
+    /**
+     * @deprecated загружает всех участников группы, используйте {@code GroupAccessService.isMember}
+     */
+    @Deprecated
     public boolean isMember(Long userId) {
         return members.stream()
                 .anyMatch(member -> member.getUser().getId().equals(userId));
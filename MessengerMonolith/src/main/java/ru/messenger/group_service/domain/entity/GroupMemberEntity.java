@@ -19,7 +19,8 @@ import java.time.Instant;
 @Builder
 public class GroupMemberEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "group_member_seq")
+    @SequenceGenerator(name = "group_member_seq", sequenceName = "group_members_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -20,7 +20,8 @@ import java.util.Set;
 public class GroupPostCommentEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "group_post_comment_seq")
+    @SequenceGenerator(name = "group_post_comment_seq", sequenceName = "group_post_comments_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -38,6 +39,19 @@ public class GroupPostCommentEntity {
     @JoinColumn(name = "parent_comment_id")
     private GroupPostCommentEntity parentComment;
 
+    // Корневой комментарий ветки (null у корня)
+    @Column(name = "root_comment_id")
+    private Long rootCommentId;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer depth = 0;
+
+    // Число прямых ответов; меняется только атомарным UPDATE, сохранение сущности его не перезаписывает
+    @Column(name = "replies_count", nullable = false, updatable = false)
+    @Builder.Default
+    private Integer repliesCount = 0;
+
     @OneToMany(mappedBy = "parentComment", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @Builder.Default
     private Set<GroupPostCommentEntity> replies = new HashSet<>();
@@ -45,11 +45,12 @@ public class GroupPostEntity {
     @Builder.Default
     private GroupPostStatus status = GroupPostStatus.PUBLISHED;
 
-    @Column(name = "likes_count", nullable = false)
+    // Счетчики меняются только атомарным UPDATE в репозитории, сохранение сущности их не перезаписывает
+    @Column(name = "likes_count", nullable = false, updatable = false)
     @Builder.Default
     private Integer likesCount = 0;
 
-    @Column(name = "comments_count", nullable = false)
+    @Column(name = "comments_count", nullable = false, updatable = false)
     @Builder.Default
     private Integer commentsCount = 0;
 
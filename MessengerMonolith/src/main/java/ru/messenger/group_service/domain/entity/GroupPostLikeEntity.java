@@ -17,7 +17,8 @@ import java.time.Instant;
 @Builder
 public class GroupPostLikeEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "group_post_like_seq")
+    @SequenceGenerator(name = "group_post_like_seq", sequenceName = "group_post_likes_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -7,7 +7,9 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.messenger.group_service.domain.entity.GroupCommentLikeEntity;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface GroupCommentLikeRepository extends JpaRepository<GroupCommentLikeEntity, Long> {
@@ -28,4 +30,8 @@ public interface GroupCommentLikeRepository extends JpaRepository<GroupCommentLi
 
     @Query("SELECT COUNT(l) FROM GroupCommentLikeEntity l WHERE l.comment.id = :commentId")
     long countLikesByCommentId(@Param("commentId") Long commentId);
+
+    // Какие из комментариев страницы лайкнул пользователь (один запрос на страницу)
+    @Query("SELECT l.comment.id FROM GroupCommentLikeEntity l WHERE l.user.id = :userId AND l.comment.id IN :commentIds")
+    Set<Long> findLikedCommentIds(@Param("userId") Long userId, @Param("commentIds") Collection<Long> commentIds);
 }
\ No newline at end of file
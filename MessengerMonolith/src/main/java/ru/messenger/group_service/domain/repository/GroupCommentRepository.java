@@ -21,6 +21,44 @@ public interface GroupCommentRepository extends JpaRepository<GroupPostCommentEn
     Page<GroupPostCommentEntity> findByPostIdAndParentCommentIsNull(Long postId, Pageable pageable);
     Page<GroupPostCommentEntity> findByParentCommentId(Long parentCommentId, Pageable pageable);
 
+    // Первые size веток поста и до replies ответов в каждой одним запросом.
+    // [id, post_id, author_id, username, avatar_url, content, parent_comment_id, likes_count,
+    //  replies_count, created_at, updated_at, root_id, total_replies]
+    @Query(value = "WITH roots AS (" +
+            "SELECT id FROM group_post_comments " +
+            "WHERE post_id = :postId AND parent_comment_id IS NULL " +
+            "ORDER BY created_at, id LIMIT :size OFFSET :offset), " +
+            "ranked AS (" +
+            "SELECT c.id, c.root_comment_id, " +
+            "ROW_NUMBER() OVER (PARTITION BY c.root_comment_id ORDER BY c.created_at, c.id) AS rn, " +
+            "COUNT(*) OVER (PARTITION BY c.root_comment_id) AS total " +
+            "FROM group_post_comments c WHERE c.root_comment_id IN (SELECT id FROM roots)), " +
+            "thread AS (" +
+            "SELECT r.id, r.id AS root_id, 0 AS rn, " +
+            "COALESCE((SELECT MAX(x.total) FROM ranked x WHERE x.root_comment_id = r.id), 0) AS total " +
+            "FROM roots r " +
+            "UNION ALL " +
+            "SELECT id, root_comment_id, rn, total FROM ranked WHERE rn <= :replies) " +
+            "SELECT c.id, c.post_id, c.author_id, u.username, u.avatar_url, c.content, c.parent_comment_id, " +
+            "c.likes_count, c.replies_count, c.created_at, c.updated_at, t.root_id, t.total " +
+            "FROM thread t " +
+            "JOIN group_post_comments c ON c.id = t.id " +
+            "JOIN group_post_comments rc ON rc.id = t.root_id " +
+            "JOIN users u ON u.id = c.author_id " +
+            "ORDER BY rc.created_at, rc.id, t.rn",
+            nativeQuery = true)
+    List<Object[]> findThreads(@Param("postId") Long postId,
+                               @Param("size") int size,
+                               @Param("offset") int offset,
+                               @Param("replies") int replies);
+
+    // Атомарное изменение числа прямых ответов
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE group_post_comments SET replies_count = GREATEST(replies_count + :delta, 0) " +
+            "WHERE id = :commentId",
+            nativeQuery = true)
+    int incrementRepliesCount(@Param("commentId") Long commentId, @Param("delta") int delta);
+
     // Поиск по автору
     Page<GroupPostCommentEntity> findByAuthorId(Long authorId, Pageable pageable);
 
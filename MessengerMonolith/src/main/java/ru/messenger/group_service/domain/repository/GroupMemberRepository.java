@@ -23,8 +23,14 @@ public interface GroupMemberRepository extends JpaRepository<GroupMemberEntity,
 
     // Проверки существования
     boolean existsByGroupIdAndUserId(Long groupId, Long userId);
+
     boolean existsByGroupIdAndUserIdAndStatus(Long groupId, Long userId, GroupMemberStatus status);
 
+    // Группы пользователя, посты которых не раскладываются по лентам
+    @Query("SELECT gm.group.id FROM GroupMemberEntity gm " +
+            "WHERE gm.user.id = :userId AND gm.status = 'ACTIVE' AND gm.group.feedPull = TRUE")
+    List<Long> findActiveFeedPullGroupIds(@Param("userId") Long userId);
+
     // Подсчеты
     long countByGroupId(Long groupId);
     long countByGroupIdAndStatus(Long groupId, GroupMemberStatus status);
@@ -0,0 +1,33 @@
+package ru.messenger.group_service.domain.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.messenger.group_service.domain.entity.GroupPostLikeEntity;
+
+import java.util.Collection;
+import java.util.Set;
+
+@Repository
+public interface GroupPostLikeRepository extends JpaRepository<GroupPostLikeEntity, Long> {
+
+    boolean existsByPostIdAndUserId(Long postId, Long userId);
+
+    // Поставить лайк: повторный вызов ничего не вставляет (uk_group_post_likes_post_user)
+    @Modifying
+    @Query(value = "INSERT INTO group_post_likes (post_id, user_id, created_at) " +
+            "VALUES (:postId, :userId, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (post_id, user_id) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM GroupPostLikeEntity l WHERE l.post.id = :postId AND l.user.id = :userId")
+    int deleteByPostIdAndUserId(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    // Какие из постов страницы лайкнул пользователь (один запрос на страницу)
+    @Query("SELECT l.post.id FROM GroupPostLikeEntity l WHERE l.user.id = :userId AND l.post.id IN :postIds")
+    Set<Long> findLikedPostIds(@Param("userId") Long userId, @Param("postIds") Collection<Long> postIds);
+}
@@ -3,6 +3,7 @@ package ru.messenger.group_service.domain.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -11,6 +12,7 @@ import ru.messenger.group_service.domain.entity.enums.GroupPostStatus;
 import ru.messenger.group_service.domain.entity.enums.GroupPostType;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -56,6 +58,48 @@ public interface GroupPostRepository extends JpaRepository<GroupPostEntity, Long
             "ORDER BY p.createdAt DESC")
     Page<GroupPostEntity> findFeedForUser(@Param("userId") Long userId, Pageable pageable);
 
+    // Лента: посты больших групп старше курсора (индекс group_posts(group_id, created_at, id))
+    @Query("SELECT p FROM GroupPostEntity p JOIN FETCH p.author " +
+            "WHERE p.group.id IN :groupIds AND p.status = 'PUBLISHED' " +
+            "AND (p.createdAt < :before OR (p.createdAt = :before AND p.id < :beforeId)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<GroupPostEntity> findPublishedInGroupsBefore(@Param("groupIds") List<Long> groupIds,
+                                                      @Param("before") Instant before,
+                                                      @Param("beforeId") Long beforeId,
+                                                      Pageable pageable);
+
+    // Лента: посты из готовых записей вместе с авторами
+    @Query("SELECT p FROM GroupPostEntity p JOIN FETCH p.author WHERE p.id IN :ids")
+    List<GroupPostEntity> findWithAuthorByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Опубликованные посты автора, видимые пользователю: публичные группы или группы,
+    // где он активный участник (индекс group_posts(author_id, created_at, id))
+    @Query(value = "SELECT p FROM GroupPostEntity p JOIN FETCH p.author JOIN p.group g " +
+            "WHERE p.author.id = :authorId AND p.status = 'PUBLISHED' " +
+            "AND (g.isPublic = true OR EXISTS (SELECT 1 FROM GroupMemberEntity m " +
+            "WHERE m.group.id = g.id AND m.user.id = :viewerId AND m.status = 'ACTIVE')) " +
+            "ORDER BY p.createdAt DESC, p.id DESC",
+            countQuery = "SELECT COUNT(p) FROM GroupPostEntity p JOIN p.group g " +
+                    "WHERE p.author.id = :authorId AND p.status = 'PUBLISHED' " +
+                    "AND (g.isPublic = true OR EXISTS (SELECT 1 FROM GroupMemberEntity m " +
+                    "WHERE m.group.id = g.id AND m.user.id = :viewerId AND m.status = 'ACTIVE'))")
+    Page<GroupPostEntity> findVisibleByAuthor(@Param("authorId") Long authorId,
+                                              @Param("viewerId") Long viewerId,
+                                              Pageable pageable);
+
+    // То же с курсором (createdAt, id)
+    @Query("SELECT p FROM GroupPostEntity p JOIN FETCH p.author JOIN p.group g " +
+            "WHERE p.author.id = :authorId AND p.status = 'PUBLISHED' " +
+            "AND (g.isPublic = true OR EXISTS (SELECT 1 FROM GroupMemberEntity m " +
+            "WHERE m.group.id = g.id AND m.user.id = :viewerId AND m.status = 'ACTIVE')) " +
+            "AND (p.createdAt < :before OR (p.createdAt = :before AND p.id < :beforeId)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<GroupPostEntity> findVisibleByAuthorBefore(@Param("authorId") Long authorId,
+                                                    @Param("viewerId") Long viewerId,
+                                                    @Param("before") Instant before,
+                                                    @Param("beforeId") Long beforeId,
+                                                    Pageable pageable);
+
     // Популярные посты (по лайкам)
     @Query("SELECT p FROM GroupPostEntity p " +
             "WHERE p.group.id = :groupId " +
@@ -239,4 +283,19 @@ public interface GroupPostRepository extends JpaRepository<GroupPostEntity, Long
             @Param("year") int year,
             @Param("month") int month,
             Pageable pageable);
-}
\ No newline at end of file
+
+    // Атомарное изменение счетчиков поста
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE group_posts SET likes_count = GREATEST(likes_count + :delta, 0) WHERE id = :postId",
+            nativeQuery = true)
+    int incrementLikesCount(@Param("postId") Long postId, @Param("delta") int delta);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE group_posts SET comments_count = GREATEST(comments_count + :delta, 0) WHERE id = :postId",
+            nativeQuery = true)
+    int incrementCommentsCount(@Param("postId") Long postId, @Param("delta") int delta);
+
+    // Текущее значение из БД (сущность в контексте после incrementLikesCount устарела)
+    @Query("SELECT p.likesCount FROM GroupPostEntity p WHERE p.id = :postId")
+    Integer findLikesCount(@Param("postId") Long postId);
+}
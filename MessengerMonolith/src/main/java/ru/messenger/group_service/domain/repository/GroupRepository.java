@@ -3,6 +3,7 @@ package ru.messenger.group_service.domain.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -11,6 +12,7 @@ import ru.messenger.group_service.domain.entity.enums.GroupType;
 import ru.messenger.group_service.domain.entity.enums.GroupVisibility;
 
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -183,6 +185,59 @@ public interface GroupRepository extends JpaRepository<GroupEntity, Long> {
     // Статистика по датам
     long countByCreatedAtAfter(Instant since);
 
+    // Атомарное изменение счетчиков без пересчета COUNT(*)
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE groups SET members_count = GREATEST(members_count + :delta, 0) WHERE id = :groupId",
+            nativeQuery = true)
+    int incrementMembersCount(@Param("groupId") Long groupId, @Param("delta") int delta);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE groups SET posts_count = GREATEST(posts_count + :delta, 0) WHERE id = :groupId",
+            nativeQuery = true)
+    int incrementPostsCount(@Param("groupId") Long groupId, @Param("delta") int delta);
+
+    // Перевод группы в режим чтения ленты при запросе (необратимо)
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE groups SET feed_pull = TRUE WHERE id = :groupId AND feed_pull = FALSE",
+            nativeQuery = true)
+    int markFeedPull(@Param("groupId") Long groupId);
+
+    // Количество групп по типам одним запросом: [type, count]
+    @Query("SELECT g.type, COUNT(g) FROM GroupEntity g GROUP BY g.type")
+    List<Object[]> countGroupsByType();
+
+    // Рейтинг публичных групп по дневной статистике (group_activity_daily)
+    // [id, name, type, posts_count, members_count, created_at, total_activity, recent_posts]
+    @Query(value = "SELECT g.id, g.name, g.type, g.posts_count, g.members_count, g.created_at, " +
+            "SUM(d.posts_count + d.comments_count) AS total_activity, " +
+            "SUM(CASE WHEN d.day >= :recentSince THEN d.posts_count ELSE 0 END) AS recent_posts " +
+            "FROM group_activity_daily d " +
+            "JOIN groups g ON g.id = d.group_id " +
+            "WHERE d.day >= :since AND g.is_public = true " +
+            "GROUP BY g.id, g.name, g.type, g.posts_count, g.members_count, g.created_at " +
+            "ORDER BY total_activity DESC, g.id " +
+            "LIMIT :limit", nativeQuery = true)
+    List<Object[]> findActivityLeaderboard(@Param("since") LocalDate since,
+                                           @Param("recentSince") LocalDate recentSince,
+                                           @Param("limit") int limit);
+
+    // Плотный ряд дневной активности группы (дни без событий - нулями), один проход по PK
+    // [day, posts, comments, likes, joins, leaves, active_members]
+    @Query(value = "SELECT CAST(s.day AS DATE), COALESCE(d.posts_count, 0), COALESCE(d.comments_count, 0), " +
+            "COALESCE(d.likes_count, 0), COALESCE(d.joins_count, 0), COALESCE(d.leaves_count, 0), " +
+            "COALESCE(d.active_members, 0) " +
+            "FROM generate_series(CAST(:fromDay AS DATE), CAST(:toDay AS DATE), INTERVAL '1 day') AS s(day) " +
+            "LEFT JOIN group_activity_daily d ON d.group_id = :groupId AND d.day = CAST(s.day AS DATE) " +
+            "ORDER BY s.day", nativeQuery = true)
+    List<Object[]> findActivitySeries(@Param("groupId") Long groupId,
+                                      @Param("fromDay") LocalDate fromDay,
+                                      @Param("toDay") LocalDate toDay);
+
+    // Суммарная активность платформы с указанного дня: [posts, comments]
+    @Query(value = "SELECT COALESCE(SUM(posts_count), 0), COALESCE(SUM(comments_count), 0) " +
+            "FROM group_activity_daily WHERE day >= :since", nativeQuery = true)
+    List<Object[]> sumActivitySince(@Param("since") LocalDate since);
+
     // Поиск по названию
     Optional<GroupEntity> findByName(String name);
 
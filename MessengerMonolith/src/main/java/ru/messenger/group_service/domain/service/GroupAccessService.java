@@ -0,0 +1,192 @@
+package ru.messenger.group_service.domain.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.messenger.group_service.domain.entity.GroupEntity;
+import ru.messenger.group_service.domain.entity.enums.GroupMemberRole;
+import ru.messenger.group_service.domain.entity.enums.GroupMemberStatus;
+import ru.messenger.group_service.domain.repository.GroupMemberRepository;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Проверка доступа к группам без загрузки GroupEntity.members.
+ * Роль и статус участника читаются одной строкой по уникальному индексу (group_id, user_id)
+ * и кэшируются по паре (группа, пользователь). Размер кэша ограничен (LRU), запись сбрасывается
+ * при вступлении, выходе, исключении, смене роли и передаче прав владельца; загрузка,
+ * пересекшаяся со сбросом, в кэш не попадает.
+ * При chat.broker.mode=relay (несколько узлов) кэш выключен: сброс виден только своему узлу.
+ */
+@Slf4j
+@Service
+public class GroupAccessService {
+
+    // Метка "пользователь не состоит в группе"
+    private static final MemberAccess NONE = new MemberAccess(null, null, false);
+
+    // Счетчики версий по секциям пар (для отбраковки устаревших загрузок)
+    private static final int VERSION_STRIPES = 1024;
+
+    private final GroupMemberRepository groupMemberRepository;
+    private final Map<MemberKey, MemberAccess> access;
+    private final long[] versions = new long[VERSION_STRIPES];
+    private final boolean enabled;
+
+    public GroupAccessService(GroupMemberRepository groupMemberRepository,
+                              @Value("${group.access-cache.max-entries:100000}") int maxEntries,
+                              @Value("${chat.broker.mode:simple}") String brokerMode) {
+        this.groupMemberRepository = groupMemberRepository;
+        this.enabled = !"relay".equalsIgnoreCase(brokerMode);
+        this.access = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemberKey, MemberAccess> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private record MemberKey(Long groupId, Long userId) {
+    }
+
+    /**
+     * Роль и статус пользователя в группе
+     */
+    private record MemberAccess(GroupMemberRole role, GroupMemberStatus status, boolean admin) {
+
+        private boolean isActive() {
+            return status == GroupMemberStatus.ACTIVE;
+        }
+    }
+
+    /**
+     * Является ли пользователь активным участником группы
+     */
+    public boolean isMember(Long groupId, Long userId) {
+        if (groupId == null || userId == null) {
+            return false;
+        }
+        return getOrLoad(groupId, userId).isActive();
+    }
+
+    /**
+     * Является ли пользователь активным администратором группы
+     */
+    public boolean isAdmin(Long groupId, Long userId) {
+        if (groupId == null || userId == null) {
+            return false;
+        }
+        MemberAccess member = getOrLoad(groupId, userId);
+        return member.isActive() && member.admin();
+    }
+
+    /**
+     * Может ли пользователь читать группу: публичная группа или участник
+     */
+    public boolean canAccess(GroupEntity group, Long userId) {
+        return group.getIsPublic() || isMember(group.getId(), userId);
+    }
+
+    /**
+     * Проверить доступ к группе
+     */
+    public void checkAccess(GroupEntity group, Long userId) {
+        if (!canAccess(group, userId)) {
+            throw new RuntimeException("Доступ к группе запрещен");
+        }
+    }
+
+    /**
+     * Проверить, что пользователь - участник группы (независимо от публичности)
+     */
+    public void checkMember(Long groupId, Long userId) {
+        if (!isMember(groupId, userId)) {
+            throw new RuntimeException("Доступ к группе запрещен");
+        }
+    }
+
+    /**
+     * Сбросить права пользователя в группе. Внутри транзакции сброс повторяется после коммита,
+     * чтобы параллельное чтение не закэшировало старую роль.
+     */
+    public void invalidate(Long groupId, Long userId) {
+        MemberKey key = new MemberKey(groupId, userId);
+        evict(key);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(key);
+                }
+            });
+        }
+    }
+
+    /**
+     * Сбросить права нескольких пользователей группы (после массового добавления)
+     */
+    public void invalidate(Long groupId, Collection<Long> userIds) {
+        List<MemberKey> keys = userIds.stream().map(userId -> new MemberKey(groupId, userId)).toList();
+        keys.forEach(this::evict);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    keys.forEach(GroupAccessService.this::evict);
+                }
+            });
+        }
+    }
+
+    private MemberAccess getOrLoad(Long groupId, Long userId) {
+        if (!enabled) {
+            return load(groupId, userId);
+        }
+
+        MemberKey key = new MemberKey(groupId, userId);
+        long token;
+        synchronized (access) {
+            MemberAccess member = access.get(key);
+            if (member != null) {
+                return member;
+            }
+            token = versions[stripe(key)];
+        }
+
+        MemberAccess member = load(groupId, userId);
+
+        synchronized (access) {
+            // Права менялись во время загрузки - результат может быть устаревшим
+            if (versions[stripe(key)] != token) {
+                return member;
+            }
+            access.put(key, member);
+        }
+        log.debug("Права пользователя {} в группе {} загружены в кэш", userId, groupId);
+        return member;
+    }
+
+    private MemberAccess load(Long groupId, Long userId) {
+        return groupMemberRepository.findByGroupIdAndUserId(groupId, userId)
+                .map(m -> new MemberAccess(m.getRole(), m.getStatus(), Boolean.TRUE.equals(m.getIsAdmin())))
+                .orElse(NONE);
+    }
+
+    private void evict(MemberKey key) {
+        synchronized (access) {
+            versions[stripe(key)]++;
+            access.remove(key);
+        }
+    }
+
+    private int stripe(MemberKey key) {
+        return Math.floorMod(key.hashCode(), VERSION_STRIPES);
+    }
+}
@@ -0,0 +1,213 @@
+package ru.messenger.group_service.domain.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Счетчики активности групп по дням (UTC).
+ * События постов, комментариев, лайков, вступлений и выходов копятся в памяти
+ * и периодически одним батчем добавляются в group_activity_daily. Уникальные активные участники считаются через
+ * group_activity_members: в active_members прибавляются только впервые вставленные за сутки
+ * (активными считаются авторы постов и комментариев).
+ */
+@Slf4j
+@Component
+public class GroupActivityCounters {
+
+    // Новые участники дня и прибавка к дневным счетчикам одним запросом
+    private static final String ROLLUP_SQL =
+            "WITH inserted AS (" +
+                    "INSERT INTO group_activity_members (group_id, day, user_id) " +
+                    "SELECT ?, ?, UNNEST(?) ON CONFLICT DO NOTHING RETURNING 1) " +
+                    "INSERT INTO group_activity_daily (group_id, day, posts_count, comments_count, " +
+                    "likes_count, joins_count, leaves_count, active_members) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, (SELECT COUNT(*) FROM inserted)) " +
+                    "ON CONFLICT (group_id, day) DO UPDATE SET " +
+                    "posts_count = group_activity_daily.posts_count + EXCLUDED.posts_count, " +
+                    "comments_count = group_activity_daily.comments_count + EXCLUDED.comments_count, " +
+                    "likes_count = group_activity_daily.likes_count + EXCLUDED.likes_count, " +
+                    "joins_count = group_activity_daily.joins_count + EXCLUDED.joins_count, " +
+                    "leaves_count = group_activity_daily.leaves_count + EXCLUDED.leaves_count, " +
+                    "active_members = group_activity_daily.active_members + EXCLUDED.active_members";
+
+    private static final String PRUNE_MEMBERS_SQL = "DELETE FROM group_activity_members WHERE day < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int memberRetentionDays;
+
+    private Map<DayKey, Pending> pending = new HashMap<>();
+
+    public GroupActivityCounters(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${group.stats.member-retention-days:2}") int memberRetentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.memberRetentionDays = memberRetentionDays;
+    }
+
+    /**
+     * Ключ счетчика: группа и день
+     */
+    private record DayKey(Long groupId, LocalDate day) {
+    }
+
+    /**
+     * Накопленные с прошлого сброса изменения
+     */
+    private static class Pending {
+        private int posts;
+        private int comments;
+        private int likes;
+        private int joins;
+        private int leaves;
+        private final Set<Long> activeUsers = new HashSet<>();
+    }
+
+    public void recordPost(Long groupId, Long authorId) {
+        record(groupId, authorId, pending -> pending.posts++);
+    }
+
+    public void recordComment(Long groupId, Long authorId) {
+        record(groupId, authorId, pending -> pending.comments++);
+    }
+
+    public void recordLike(Long groupId) {
+        record(groupId, null, pending -> pending.likes++);
+    }
+
+    public void recordJoins(Long groupId, int count) {
+        if (count > 0) {
+            record(groupId, null, pending -> pending.joins += count);
+        }
+    }
+
+    public void recordLeave(Long groupId) {
+        record(groupId, null, pending -> pending.leaves++);
+    }
+
+    /**
+     * Сброс накопленного в group_activity_daily
+     */
+    @Scheduled(fixedDelayString = "${group.stats.rollup-interval-ms:30000}")
+    public void rollup() {
+        Map<DayKey, Pending> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+
+        List<Map.Entry<DayKey, Pending>> entries = new ArrayList<>(batch.entrySet());
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(ROLLUP_SQL,
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            DayKey key = entries.get(i).getKey();
+                            Pending value = entries.get(i).getValue();
+                            Date day = Date.valueOf(key.day());
+
+                            ps.setLong(1, key.groupId());
+                            ps.setDate(2, day);
+                            ps.setArray(3, ps.getConnection().createArrayOf("bigint", value.activeUsers.toArray()));
+                            ps.setLong(4, key.groupId());
+                            ps.setDate(5, day);
+                            ps.setInt(6, value.posts);
+                            ps.setInt(7, value.comments);
+                            ps.setInt(8, value.likes);
+                            ps.setInt(9, value.joins);
+                            ps.setInt(10, value.leaves);
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return entries.size();
+                        }
+                    }));
+            log.debug("Статистика групп: сброшено {} дневных счетчиков", entries.size());
+        } catch (Exception e) {
+            // Возвращаем несброшенное, чтобы не потерять при следующей попытке
+            log.error("Ошибка сброса статистики групп", e);
+            synchronized (this) {
+                batch.forEach((key, value) -> {
+                    Pending current = pending.computeIfAbsent(key, k -> new Pending());
+                    current.posts += value.posts;
+                    current.comments += value.comments;
+                    current.likes += value.likes;
+                    current.joins += value.joins;
+                    current.leaves += value.leaves;
+                    current.activeUsers.addAll(value.activeUsers);
+                });
+            }
+        }
+    }
+
+    /**
+     * Остановка приложения: накопленное с последнего сброса записывается сразу, а не теряется
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        rollup();
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                log.warn("Статистика групп: при остановке не записано {} дневных счетчиков", pending.size());
+            }
+        }
+    }
+
+    /**
+     * Старые отметки участников больше не нужны: дни, за которые они велись, закрыты
+     */
+    @Scheduled(cron = "${group.stats.prune-cron:0 15 0 * * *}", zone = "UTC")
+    public void pruneMembers() {
+        LocalDate border = LocalDate.now(ZoneOffset.UTC).minusDays(memberRetentionDays);
+        int deleted = jdbcTemplate.update(PRUNE_MEMBERS_SQL, Date.valueOf(border));
+        log.info("Статистика групп: удалено {} отметок участников до {}", deleted, border);
+    }
+
+    private void record(Long groupId, Long activeUserId, Consumer<Pending> change) {
+        LocalDate day = LocalDate.now(ZoneOffset.UTC);
+        afterCommit(() -> {
+            synchronized (this) {
+                Pending value = pending.computeIfAbsent(new DayKey(groupId, day), k -> new Pending());
+                change.accept(value);
+                if (activeUserId != null) {
+                    value.activeUsers.add(activeUserId);
+                }
+            }
+        });
+    }
+
+    // Внутри транзакции событие учитывается только после коммита
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
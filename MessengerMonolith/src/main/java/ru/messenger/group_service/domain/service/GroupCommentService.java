@@ -6,13 +6,15 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.messenger.common.NativeQueryValues;
 import ru.messenger.group_service.api.dto.request.GroupCommentCreateRequestDto;
 import ru.messenger.group_service.api.dto.response.GroupCommentResponseDto;
+import ru.messenger.group_service.api.dto.response.GroupCommentThreadResponseDto;
 import ru.messenger.group_service.api.mapper.GroupCommentMapper;
 import ru.messenger.group_service.domain.entity.GroupPostCommentEntity;
 import ru.messenger.group_service.domain.entity.GroupPostEntity;
-import ru.messenger.group_service.domain.entity.enums.GroupMemberStatus;
 import ru.messenger.group_service.domain.entity.enums.GroupPostStatus;
+import ru.messenger.group_service.domain.repository.GroupCommentLikeRepository;
 import ru.messenger.group_service.domain.repository.GroupCommentRepository;
 import ru.messenger.group_service.domain.repository.GroupMemberRepository;
 import ru.messenger.group_service.domain.repository.GroupPostRepository;
@@ -20,18 +22,30 @@ import ru.messenger.user_service.domain.entity.UserEntity;
 import ru.messenger.user_service.domain.repository.UserRepository;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class GroupCommentService {
 
+    // Ограничения выдачи веток
+    private static final int MAX_THREADS_PAGE_SIZE = 50;
+    private static final int MAX_THREAD_REPLIES = 20;
+
     private final GroupCommentRepository groupCommentRepository;
     private final GroupPostRepository groupPostRepository;
     private final GroupMemberRepository groupMemberRepository;
     private final UserRepository userRepository;
     private final GroupCommentMapper groupCommentMapper;
+    private final GroupActivityCounters groupActivityCounters;
+    private final GroupCommentLikeRepository groupCommentLikeRepository;
+    private final GroupAccessService groupAccessService;
 
     /**
      * Создать комментарий к посту
@@ -53,25 +67,17 @@ public class GroupCommentService {
         UserEntity author = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
 
-        // 4. Проверяем доступ к группе
-        checkGroupAccess(post.getGroup(), userId);
-
-        // 5. Проверяем, является ли пользователь участником группы
-        boolean isMember = groupMemberRepository.existsByGroupIdAndUserIdAndStatus(
-                post.getGroup().getId(), userId, GroupMemberStatus.ACTIVE);
+        // 4. Комментировать могут только участники группы
+        groupAccessService.checkMember(post.getGroup().getId(), userId);
 
-        if (!isMember) {
-            throw new RuntimeException("Только участники группы могут оставлять комментарии");
-        }
-
-        // 6. Создаем комментарий
+        // 5. Создаем комментарий
         GroupPostCommentEntity comment = GroupPostCommentEntity.builder()
                 .post(post)
                 .author(author)
                 .content(requestDto.getContent())
                 .build();
 
-        // 7. Если есть родительский комментарий
+        // 6. Если есть родительский комментарий
         if (requestDto.getParentCommentId() != null) {
             GroupPostCommentEntity parentComment = groupCommentRepository.findById(requestDto.getParentCommentId())
                     .orElseThrow(() -> new RuntimeException("Родительский комментарий не найден"));
@@ -82,13 +88,20 @@ public class GroupCommentService {
             }
 
             comment.setParentComment(parentComment);
+            comment.setRootCommentId(parentComment.getRootCommentId() != null
+                    ? parentComment.getRootCommentId() : parentComment.getId());
+            comment.setDepth(parentComment.getDepth() + 1);
         }
 
-        // 8. Сохраняем комментарий
+        // 7. Сохраняем комментарий
         GroupPostCommentEntity savedComment = groupCommentRepository.save(comment);
 
-        // 9. Обновляем счетчик комментариев в посте
-        updateCommentsCount(postId);
+        // 8. Обновляем счетчики комментариев в посте и ответов у родителя
+        groupPostRepository.incrementCommentsCount(postId, 1);
+        if (comment.getParentComment() != null) {
+            groupCommentRepository.incrementRepliesCount(comment.getParentComment().getId(), 1);
+        }
+        groupActivityCounters.recordComment(post.getGroup().getId(), userId);
 
         log.info("Создан комментарий ID: {}", savedComment.getId());
 
@@ -107,15 +120,61 @@ public class GroupCommentService {
                 .orElseThrow(() -> new RuntimeException("Пост не найден"));
 
         // 2. Проверяем доступ к группе
-        checkGroupAccess(post.getGroup(), userId);
+        groupAccessService.checkMember(post.getGroup().getId(), userId);
 
         // 3. Получаем комментарии (только корневые, без ответов)
         Page<GroupPostCommentEntity> comments = groupCommentRepository.findByPostIdAndParentCommentIsNull(
                 postId, pageable);
 
         // 4. Обогащаем информацией о лайках
-        return comments.map(comment -> enrichWithLikedByMe(
-                groupCommentMapper.toResponseDto(comment), userId));
+        return toResponsePage(comments, userId);
+    }
+
+    /**
+     * Получить ветки комментариев поста: корневые комментарии страницы и первые ответы каждой ветки
+     * (ответы любого уровня по времени) одним запросом
+     */
+    @Transactional(readOnly = true)
+    public List<GroupCommentThreadResponseDto> getCommentThreads(Long postId, Long userId,
+                                                                 int page, int size, int replies) {
+        log.info("Получение веток комментариев к посту {} для пользователя {}", postId, userId);
+
+        // 1. Находим пост
+        GroupPostEntity post = groupPostRepository.findById(postId)
+                .orElseThrow(() -> new RuntimeException("Пост не найден"));
+
+        // 2. Проверяем доступ к группе
+        groupAccessService.checkMember(post.getGroup().getId(), userId);
+
+        // 3. Загружаем корни и ответы
+        int pageSize = Math.max(1, Math.min(size, MAX_THREADS_PAGE_SIZE));
+        int repliesLimit = Math.max(0, Math.min(replies, MAX_THREAD_REPLIES));
+        List<Object[]> rows = groupCommentRepository.findThreads(
+                postId, pageSize, Math.max(page, 0) * pageSize, repliesLimit);
+
+        // 4. Собираем ветки: строки идут по корням, корень первым
+        Map<Long, GroupCommentThreadResponseDto> threads = new LinkedHashMap<>();
+        List<GroupCommentResponseDto> all = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            GroupCommentResponseDto dto = toResponseDto(row);
+            Long rootId = ((Number) row[11]).longValue();
+            all.add(dto);
+
+            if (dto.getId().equals(rootId)) {
+                threads.put(rootId, GroupCommentThreadResponseDto.builder()
+                        .comment(dto)
+                        .replies(new ArrayList<>())
+                        .totalReplies(((Number) row[12]).longValue())
+                        .build());
+            } else {
+                threads.get(rootId).getReplies().add(dto);
+            }
+        }
+
+        // 5. Обогащаем информацией о лайках
+        enrichWithLikedByMe(all, userId);
+
+        return new ArrayList<>(threads.values());
     }
 
     /**
@@ -182,18 +241,19 @@ public class GroupCommentService {
         }
 
         // 4. Если у комментария есть ответы, помечаем его как удаленный
-        if (!comment.getReplies().isEmpty()) {
+        if (comment.getRepliesCount() > 0) {
             comment.setContent("[Комментарий удален]");
             comment.setUpdatedAt(Instant.now());
             groupCommentRepository.save(comment);
         }
-        // Если ответов нет, удаляем полностью
+        // Если ответов нет, удаляем полностью и уменьшаем счетчик комментариев в посте
         else {
             groupCommentRepository.delete(comment);
+            groupPostRepository.incrementCommentsCount(post.getId(), -1);
+            if (comment.getParentComment() != null) {
+                groupCommentRepository.incrementRepliesCount(comment.getParentComment().getId(), -1);
+            }
         }
-
-        // 5. Обновляем счетчик комментариев в посте
-        updateCommentsCount(post.getId());
     }
 
     /**
@@ -211,18 +271,10 @@ public class GroupCommentService {
         UserEntity user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
 
-        // 3. Проверяем доступ к группе
-        checkGroupAccess(comment.getPost().getGroup(), userId);
-
-        // 4. Проверяем, является ли пользователь участником группы
-        boolean isMember = groupMemberRepository.existsByGroupIdAndUserIdAndStatus(
-                comment.getPost().getGroup().getId(), userId, GroupMemberStatus.ACTIVE);
+        // 3. Ставить лайки могут только участники группы
+        groupAccessService.checkMember(comment.getPost().getGroup().getId(), userId);
 
-        if (!isMember) {
-            throw new RuntimeException("Только участники группы могут ставить лайки");
-        }
-
-        // 5. Ищем существующий лайк
+        // 4. Ищем существующий лайк
         Optional<ru.messenger.group_service.domain.entity.GroupCommentLikeEntity> existingLike =
                 comment.getLikes().stream()
                         .filter(like -> like.getUser().getId().equals(userId))
@@ -260,15 +312,14 @@ public class GroupCommentService {
                 .orElseThrow(() -> new RuntimeException("Комментарий не найден"));
 
         // 2. Проверяем доступ к группе
-        checkGroupAccess(parentComment.getPost().getGroup(), userId);
+        groupAccessService.checkMember(parentComment.getPost().getGroup().getId(), userId);
 
         // 3. Получаем ответы
         Page<GroupPostCommentEntity> replies = groupCommentRepository.findByParentCommentId(
                 commentId, pageable);
 
         // 4. Обогащаем информацией о лайках
-        return replies.map(reply -> enrichWithLikedByMe(
-                groupCommentMapper.toResponseDto(reply), userId));
+        return toResponsePage(replies, userId);
     }
 
     /**
@@ -283,7 +334,7 @@ public class GroupCommentService {
                 .orElseThrow(() -> new RuntimeException("Пост не найден"));
 
         // 2. Проверяем доступ
-        checkGroupAccess(post.getGroup(), userId);
+        groupAccessService.checkMember(post.getGroup().getId(), userId);
 
         // 3. Возвращаем количество
         return groupCommentRepository.countByPostId(postId);
@@ -299,57 +350,65 @@ public class GroupCommentService {
                 targetUserId, groupId, currentUserId);
 
         // 1. Проверяем доступ к группе
-        checkGroupAccess(groupId, currentUserId);
+        groupAccessService.checkMember(groupId, currentUserId);
 
         // 2. Получаем комментарии
         Page<GroupPostCommentEntity> comments = groupCommentRepository.findByGroupIdAndAuthorId(
                 groupId, targetUserId, pageable);
 
         // 3. Обогащаем информацией о лайках
-        return comments.map(comment -> enrichWithLikedByMe(
-                groupCommentMapper.toResponseDto(comment), currentUserId));
+        return toResponsePage(comments, currentUserId);
     }
 
     // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
 
-    /**
-     * Обновить счетчик комментариев в посте
-     */
-    private void updateCommentsCount(Long postId) {
-        long count = groupCommentRepository.countByPostId(postId);
-        groupPostRepository.findById(postId).ifPresent(post -> {
-            post.setCommentsCount((int) count);
-            groupPostRepository.save(post);
-        });
-    }
-
     /**
      * Обогатить DTO информацией о лайке пользователя
      */
     private GroupCommentResponseDto enrichWithLikedByMe(GroupCommentResponseDto dto, Long userId) {
         if (userId != null) {
-            groupCommentRepository.findById(dto.getId()).ifPresent(comment -> {
-                boolean likedByMe = comment.getLikes().stream()
-                        .anyMatch(like -> like.getUser().getId().equals(userId));
-                dto.setLikedByMe(likedByMe);
-            });
+            dto.setLikedByMe(groupCommentLikeRepository.existsByCommentIdAndUserId(dto.getId(), userId));
         }
         return dto;
     }
 
     /**
-     * Проверить доступ к группе
+     * Лайки пользователя для списка комментариев одним IN-запросом
      */
-    private void checkGroupAccess(Long groupId, Long userId) {
-        // Этот метод нужно реализовать в GroupService или использовать существующий
-        // Пока упрощенная версия
-        boolean hasAccess = groupMemberRepository.existsByGroupIdAndUserId(groupId, userId);
-        if (!hasAccess) {
-            throw new RuntimeException("Доступ к группе запрещен");
+    private void enrichWithLikedByMe(List<GroupCommentResponseDto> comments, Long userId) {
+        if (userId == null || comments.isEmpty()) {
+            return;
         }
+        List<Long> commentIds = comments.stream().map(GroupCommentResponseDto::getId).toList();
+        Set<Long> liked = groupCommentLikeRepository.findLikedCommentIds(userId, commentIds);
+        comments.forEach(dto -> dto.setLikedByMe(liked.contains(dto.getId())));
     }
 
-    private void checkGroupAccess(ru.messenger.group_service.domain.entity.GroupEntity group, Long userId) {
-        checkGroupAccess(group.getId(), userId);
+    /**
+     * Комментарий из строки findThreads
+     */
+    private GroupCommentResponseDto toResponseDto(Object[] row) {
+        GroupCommentResponseDto dto = new GroupCommentResponseDto();
+        dto.setId(((Number) row[0]).longValue());
+        dto.setPostId(((Number) row[1]).longValue());
+        dto.setAuthorId(((Number) row[2]).longValue());
+        dto.setAuthorUsername((String) row[3]);
+        dto.setAuthorAvatarUrl((String) row[4]);
+        dto.setContent((String) row[5]);
+        dto.setParentCommentId(row[6] != null ? ((Number) row[6]).longValue() : null);
+        dto.setLikesCount(((Number) row[7]).intValue());
+        dto.setRepliesCount(((Number) row[8]).intValue());
+        dto.setCreatedAt(NativeQueryValues.toInstant(row[9]));
+        dto.setUpdatedAt(NativeQueryValues.toInstant(row[10]));
+        return dto;
+    }
+
+    /**
+     * Страница комментариев: лайки пользователя определяются одним IN-запросом на всю страницу
+     */
+    private Page<GroupCommentResponseDto> toResponsePage(Page<GroupPostCommentEntity> comments, Long userId) {
+        Page<GroupCommentResponseDto> page = comments.map(groupCommentMapper::toResponseDto);
+        enrichWithLikedByMe(page.getContent(), userId);
+        return page;
     }
 }
\ No newline at end of file
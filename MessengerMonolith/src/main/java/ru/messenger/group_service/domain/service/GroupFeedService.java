@@ -0,0 +1,190 @@
+package ru.messenger.group_service.domain.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.messenger.group_service.domain.entity.GroupEntity;
+import ru.messenger.group_service.domain.entity.GroupPostEntity;
+import ru.messenger.group_service.domain.repository.GroupMemberRepository;
+import ru.messenger.group_service.domain.repository.GroupRepository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Готовые ленты пользователей (user_feed_entries).
+ * Пост группы до group.feed.fan-out-max-members участников при публикации раскладывается
+ * по лентам всех ее участников одним INSERT ... SELECT. Группа, впервые выросшая за порог,
+ * навсегда переводится в режим чтения (groups.feed_pull): ее посты не раскладываются, лента
+ * дочитывает их из group_posts при запросе. Флаг не снимается при уменьшении группы, иначе
+ * опубликованные без раскладки посты пропали бы из лент. Длина ленты ограничена group.feed.max-length:
+ * ленты, в которые с прошлого прохода что-то добавилось, периодически урезаются по одной. При вступлении в группу лента дополняется ее последними постами,
+ * при выходе посты группы из ленты убираются.
+ */
+@Slf4j
+@Service
+public class GroupFeedService {
+
+    private static final String FAN_OUT_SQL =
+            "INSERT INTO user_feed_entries (user_id, post_id, group_id, created_at) " +
+                    "SELECT m.user_id, p.id, p.group_id, p.created_at FROM group_posts p " +
+                    "JOIN group_members m ON m.group_id = p.group_id AND m.status = 'ACTIVE' " +
+                    "WHERE p.id = ? ON CONFLICT DO NOTHING RETURNING user_id";
+
+    // Последние посты группы в ленты всех новых участников
+    private static final String JOIN_SQL =
+            "INSERT INTO user_feed_entries (user_id, post_id, group_id, created_at) " +
+                    "SELECT u.user_id, p.id, p.group_id, p.created_at FROM UNNEST(?) AS u(user_id) " +
+                    "CROSS JOIN (SELECT id, group_id, created_at FROM group_posts " +
+                    "WHERE group_id = ? AND status = 'PUBLISHED' AND created_at IS NOT NULL " +
+                    "ORDER BY created_at DESC, id DESC LIMIT ?) p " +
+                    "ON CONFLICT DO NOTHING";
+
+    private static final String LEAVE_SQL = "DELETE FROM user_feed_entries WHERE user_id = ? AND group_id = ?";
+
+    private static final String ENTRIES_SQL =
+            "SELECT post_id, created_at FROM user_feed_entries " +
+                    "WHERE user_id = ? AND (created_at, post_id) < (?, ?) " +
+                    "ORDER BY created_at DESC, post_id DESC LIMIT ?";
+
+    // Лента одного пользователя: все, что старше последней сохраняемой записи
+    // (оба прохода по индексу (user_id, created_at DESC, post_id DESC); короткая лента не трогается)
+    private static final String TRIM_SQL =
+            "DELETE FROM user_feed_entries WHERE user_id = ? AND (created_at, post_id) < (" +
+                    "SELECT created_at, post_id FROM user_feed_entries WHERE user_id = ? " +
+                    "ORDER BY created_at DESC, post_id DESC OFFSET ? LIMIT 1)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GroupMemberRepository groupMemberRepository;
+    private final GroupRepository groupRepository;
+    private final int fanOutMaxMembers;
+    private final int maxLength;
+
+    // Пользователи, в чьи ленты добавлялись записи с прошлого урезания
+    private final Set<Long> grownFeeds = ConcurrentHashMap.newKeySet();
+
+    public GroupFeedService(JdbcTemplate jdbcTemplate,
+                            GroupMemberRepository groupMemberRepository,
+                            GroupRepository groupRepository,
+                            @Value("${group.feed.fan-out-max-members:1000}") int fanOutMaxMembers,
+                            @Value("${group.feed.max-length:500}") int maxLength) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.groupMemberRepository = groupMemberRepository;
+        this.groupRepository = groupRepository;
+        this.fanOutMaxMembers = fanOutMaxMembers;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Запись готовой ленты
+     */
+    public record FeedEntry(Long postId, Instant createdAt) {
+    }
+
+    /**
+     * Разложить опубликованный пост по лентам участников (для небольших групп)
+     */
+    public void onPostPublished(GroupPostEntity post) {
+        if (!isFanOut(post.getGroup())) {
+            return;
+        }
+        List<Long> userIds = jdbcTemplate.queryForList(FAN_OUT_SQL, Long.class, post.getId());
+        grownFeeds.addAll(userIds);
+        log.debug("Пост {} добавлен в {} лент", post.getId(), userIds.size());
+    }
+
+    /**
+     * Пользователь вступил в группу: последние посты группы попадают в его ленту
+     */
+    public void onMemberJoined(GroupEntity group, Long userId) {
+        onMembersJoined(group, List.of(userId));
+    }
+
+    /**
+     * В группу добавлено сразу несколько пользователей
+     */
+    public void onMembersJoined(GroupEntity group, Collection<Long> userIds) {
+        if (userIds.isEmpty() || !isFanOut(group)) {
+            return;
+        }
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(JOIN_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", userIds.toArray()));
+            ps.setLong(2, group.getId());
+            ps.setInt(3, maxLength);
+            return ps;
+        });
+        grownFeeds.addAll(userIds);
+    }
+
+    /**
+     * Пользователь покинул группу или был исключен
+     */
+    public void onMemberLeft(Long groupId, Long userId) {
+        jdbcTemplate.update(LEAVE_SQL, userId, groupId);
+    }
+
+    /**
+     * Записи ленты старше курсора, от новых к старым
+     */
+    public List<FeedEntry> findEntries(Long userId, Instant before, Long beforeId, int limit) {
+        return jdbcTemplate.query(ENTRIES_SQL,
+                (rs, rowNum) -> new FeedEntry(rs.getLong("post_id"), rs.getTimestamp("created_at").toInstant()),
+                userId, Timestamp.from(before), beforeId, limit);
+    }
+
+    /**
+     * Группы пользователя, посты которых не раскладываются и читаются при запросе ленты
+     */
+    public List<Long> findPullGroupIds(Long userId) {
+        return groupMemberRepository.findActiveFeedPullGroupIds(userId);
+    }
+
+    /**
+     * Урезать ленты до group.feed.max-length
+     */
+    @Scheduled(fixedDelayString = "${group.feed.trim-interval-ms:600000}")
+    public void trim() {
+        List<Object[]> rows = new ArrayList<>();
+        for (Iterator<Long> it = grownFeeds.iterator(); it.hasNext(); ) {
+            Long userId = it.next();
+            it.remove();
+            rows.add(new Object[]{userId, userId, maxLength - 1});
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        int deleted = 0;
+        for (int count : jdbcTemplate.batchUpdate(TRIM_SQL, rows)) {
+            deleted += Math.max(count, 0);
+        }
+        if (deleted > 0) {
+            log.info("Ленты пользователей: проверено {}, удалено {} старых записей", rows.size(), deleted);
+        }
+    }
+
+    private boolean isFanOut(GroupEntity group) {
+        if (Boolean.TRUE.equals(group.getFeedPull())) {
+            return false;
+        }
+        if (group.getMembersCount() == null || group.getMembersCount() <= fanOutMaxMembers) {
+            return true;
+        }
+
+        // Группа выросла за порог: с этого поста и дальше она читается при запросе
+        groupRepository.markFeedPull(group.getId());
+        group.setFeedPull(true);
+        log.info("Группа {} переведена в режим чтения ленты при запросе", group.getId());
+        return false;
+    }
+}
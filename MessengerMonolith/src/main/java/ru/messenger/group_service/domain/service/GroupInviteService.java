@@ -21,6 +21,7 @@ import ru.messenger.user_service.domain.entity.UserEntity;
 import ru.messenger.user_service.domain.repository.UserRepository;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -34,6 +35,7 @@ public class GroupInviteService {
     private final GroupMemberRepository groupMemberRepository;
     private final UserRepository userRepository;
     private final GroupInviteMapper groupInviteMapper;
+    private final GroupMembershipService groupMembershipService;
 
     /**
      * Создать приглашение в группу
@@ -149,13 +151,14 @@ public class GroupInviteService {
         UserEntity user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
 
-        // 6. Проверяем, не является ли уже участником
-        if (groupMemberRepository.existsByGroupIdAndUserId(invite.getGroup().getId(), userId)) {
+        // 6. Добавляем пользователя в группу (уже состоящий не добавляется)
+        if (groupMembershipService.addMembers(invite.getGroup(), List.of(userId)).isEmpty()) {
             throw new RuntimeException("Вы уже являетесь участником этой группы");
         }
 
-        // 7. Добавляем пользователя в группу
-        GroupMemberEntity member = addMember(invite.getGroup(), user);
+        // 7. Находим созданного участника
+        GroupMemberEntity member = groupMemberRepository.findByGroupIdAndUserId(invite.getGroup().getId(), userId)
+                .orElseThrow(() -> new RuntimeException("Участник не найден"));
 
         // 8. Обновляем статус приглашения
         invite.setStatus(GroupInviteStatus.ACCEPTED);
@@ -278,23 +281,6 @@ public class GroupInviteService {
 
     // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
 
-    private GroupMemberEntity addMember(GroupEntity group, UserEntity user) {
-        GroupMemberEntity member = GroupMemberEntity.builder()
-                .group(group)
-                .user(user)
-                .role(ru.messenger.group_service.domain.entity.enums.GroupMemberRole.MEMBER)
-                .status(ru.messenger.group_service.domain.entity.enums.GroupMemberStatus.ACTIVE)
-                .isAdmin(false)
-                .canPost(true)
-                .canInvite(false)
-                .canManageUsers(false)
-                .canManagePosts(false)
-                .joinedAt(Instant.now())
-                .build();
-
-        return groupMemberRepository.save(member);
-    }
-
     private GroupMemberResponseDto convertToMemberResponseDto(GroupMemberEntity member) {
         // Создаем простой DTO
         GroupMemberResponseDto dto = new GroupMemberResponseDto();
@@ -0,0 +1,77 @@
+package ru.messenger.group_service.domain.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.messenger.group_service.domain.entity.GroupEntity;
+import ru.messenger.group_service.domain.repository.GroupRepository;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Массовое добавление обычных участников в группу (начальные участники, приглашения).
+ * Несуществующие пользователи и уже состоящие в группе пропускаются внутри INSERT ... SELECT
+ * (проверка по users и ON CONFLICT), вставка идет пачками id. Счетчик участников,
+ * статистика, ленты и кэш прав обновляются один раз на весь вызов.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GroupMembershipService {
+
+    // Сколько id передавать в одном INSERT
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT_MEMBERS_SQL =
+            "INSERT INTO group_members (group_id, user_id, role, status, joined_at, is_admin, " +
+                    "can_post, can_invite, can_manage_users, can_manage_posts) " +
+                    "SELECT ?, u.id, 'MEMBER', 'ACTIVE', CURRENT_TIMESTAMP, FALSE, TRUE, FALSE, FALSE, FALSE " +
+                    "FROM users u WHERE u.id = ANY(?) " +
+                    "ON CONFLICT (group_id, user_id) DO NOTHING " +
+                    "RETURNING user_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GroupRepository groupRepository;
+    private final GroupActivityCounters groupActivityCounters;
+    private final GroupFeedService groupFeedService;
+    private final GroupAccessService groupAccessService;
+
+    /**
+     * Добавить пользователей в группу с ролью MEMBER.
+     * Возвращает id действительно добавленных пользователей.
+     */
+    @Transactional
+    public List<Long> addMembers(GroupEntity group, Collection<Long> userIds) {
+        // JDBC-вставка не видит несброшенные изменения JPA (новая группа, владелец)
+        groupRepository.flush();
+
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        List<Long> added = new ArrayList<>(ids.size());
+
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            Object[] batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())).toArray();
+            added.addAll(jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(INSERT_MEMBERS_SQL);
+                ps.setLong(1, group.getId());
+                ps.setArray(2, con.createArrayOf("bigint", batch));
+                return ps;
+            }, (rs, rowNum) -> rs.getLong(1)));
+        }
+
+        if (!added.isEmpty()) {
+            groupRepository.incrementMembersCount(group.getId(), added.size());
+            groupActivityCounters.recordJoins(group.getId(), added.size());
+            groupFeedService.onMembersJoined(group, added);
+            groupAccessService.invalidate(group.getId(), added);
+        }
+
+        log.info("В группу {} добавлено {} участников из {}", group.getId(), added.size(), ids.size());
+        return added;
+    }
+}
@@ -3,40 +3,46 @@ package ru.messenger.group_service.domain.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.messenger.group_service.api.dto.request.GroupPostCreateRequestDto;
+import ru.messenger.group_service.api.dto.response.GroupFeedResponseDto;
 import ru.messenger.group_service.api.dto.response.GroupPostResponseDto;
 import ru.messenger.group_service.api.mapper.GroupMapper;
 import ru.messenger.group_service.domain.entity.GroupEntity;
 import ru.messenger.group_service.domain.entity.GroupMemberEntity;
 import ru.messenger.group_service.domain.entity.GroupPostEntity;
-import ru.messenger.group_service.domain.entity.GroupPostLikeEntity;
 import ru.messenger.group_service.domain.entity.enums.GroupPostStatus;
 import ru.messenger.group_service.domain.entity.enums.GroupPostType;
 import ru.messenger.group_service.domain.repository.GroupMemberRepository;
+import ru.messenger.group_service.domain.repository.GroupPostLikeRepository;
 import ru.messenger.group_service.domain.repository.GroupPostRepository;
 import ru.messenger.group_service.domain.repository.GroupRepository;
 import ru.messenger.user_service.domain.entity.UserEntity;
 import ru.messenger.user_service.domain.repository.UserRepository;
 
 import java.time.Instant;
-import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class GroupPostService {
 
+    private static final int MAX_FEED_PAGE_SIZE = 100;
+
     private final GroupPostRepository groupPostRepository;
     private final GroupRepository groupRepository;
     private final GroupMemberRepository groupMemberRepository;
     private final UserRepository userRepository;
     private final GroupMapper groupMapper;
+    private final GroupActivityCounters groupActivityCounters;
+    private final GroupPostLikeRepository groupPostLikeRepository;
+    private final GroupFeedService groupFeedService;
+    private final GroupAccessService groupAccessService;
 
     /**
      * Создать пост в группе
@@ -72,7 +78,9 @@ public class GroupPostService {
         GroupPostEntity savedPost = groupPostRepository.save(post);
 
         // Обновляем счетчик постов
-        updatePostsCount(group.getId());
+        groupRepository.incrementPostsCount(group.getId(), 1);
+        groupActivityCounters.recordPost(group.getId(), authorId);
+        groupFeedService.onPostPublished(savedPost);
 
         log.info("Создан пост ID: {}", savedPost.getId());
         return enrichWithLikedByMe(groupMapper.toPostResponseDto(savedPost), authorId);
@@ -89,7 +97,7 @@ public class GroupPostService {
                 .orElseThrow(() -> new RuntimeException("Пост не найден"));
 
         // Проверяем доступ к группе
-        checkGroupAccess(post.getGroup(), userId);
+        groupAccessService.checkAccess(post.getGroup(), userId);
 
         return enrichWithLikedByMe(groupMapper.toPostResponseDto(post), userId);
     }
@@ -105,10 +113,10 @@ public class GroupPostService {
                 .orElseThrow(() -> new RuntimeException("Группа не найдена"));
 
         // Проверяем доступ
-        checkGroupAccess(group, userId);
+        groupAccessService.checkAccess(group, userId);
 
         Page<GroupPostEntity> posts = groupPostRepository.findByGroupIdAndStatus(groupId, GroupPostStatus.PUBLISHED, pageable);
-        return posts.map(post -> enrichWithLikedByMe(groupMapper.toPostResponseDto(post), userId));
+        return toResponsePage(posts, userId);
     }
 
     /**
@@ -119,7 +127,99 @@ public class GroupPostService {
         log.info("Получение ленты пользователя ID: {}", userId);
 
         Page<GroupPostEntity> posts = groupPostRepository.findFeedForUser(userId, pageable);
-        return posts.map(post -> enrichWithLikedByMe(groupMapper.toPostResponseDto(post), userId));
+        return toResponsePage(posts, userId);
+    }
+
+    /**
+     * Лента пользователя с курсорной пагинацией: готовые записи user_feed_entries
+     * и посты больших групп, слитые по (createdAt, id)
+     */
+    @Transactional(readOnly = true)
+    public GroupFeedResponseDto getUserTimeline(Long userId, String cursor, int limit) {
+        log.info("Получение ленты пользователя ID: {}, курсор: {}", userId, cursor);
+
+        int size = Math.max(1, Math.min(limit, MAX_FEED_PAGE_SIZE));
+        PostCursor position = PostCursor.parse(cursor);
+        Instant before = position.before();
+        long beforeId = position.beforeId();
+
+        // Из каждого источника берем на одну запись больше страницы, чтобы знать, есть ли продолжение
+        Map<Long, GroupPostEntity> posts = new HashMap<>();
+        List<GroupFeedService.FeedEntry> candidates =
+                new ArrayList<>(groupFeedService.findEntries(userId, before, beforeId, size + 1));
+
+        List<Long> pullGroupIds = groupFeedService.findPullGroupIds(userId);
+        if (!pullGroupIds.isEmpty()) {
+            for (GroupPostEntity post : groupPostRepository.findPublishedInGroupsBefore(
+                    pullGroupIds, before, beforeId, PageRequest.of(0, size + 1))) {
+                posts.put(post.getId(), post);
+                candidates.add(new GroupFeedService.FeedEntry(post.getId(), post.getCreatedAt()));
+            }
+        }
+
+        // Пост группы, выросшей за порог раскладки, может прийти из обоих источников
+        candidates.sort(Comparator.comparing(GroupFeedService.FeedEntry::createdAt)
+                .thenComparing(GroupFeedService.FeedEntry::postId)
+                .reversed());
+        Map<Long, GroupFeedService.FeedEntry> unique = new LinkedHashMap<>();
+        candidates.forEach(entry -> unique.putIfAbsent(entry.postId(), entry));
+
+        List<GroupFeedService.FeedEntry> page = unique.values().stream().limit(size).toList();
+        boolean hasMore = unique.size() > size;
+
+        List<Long> missingIds = page.stream()
+                .map(GroupFeedService.FeedEntry::postId)
+                .filter(id -> !posts.containsKey(id))
+                .toList();
+        if (!missingIds.isEmpty()) {
+            groupPostRepository.findWithAuthorByIdIn(missingIds).forEach(post -> posts.put(post.getId(), post));
+        }
+
+        // Записи снятых с публикации постов пропускаются
+        List<GroupPostResponseDto> result = page.stream()
+                .map(entry -> posts.get(entry.postId()))
+                .filter(post -> post != null && post.isPublished())
+                .map(groupMapper::toPostResponseDto)
+                .toList();
+        enrichWithLikedByMe(result, userId);
+
+        String nextCursor = null;
+        if (hasMore) {
+            GroupFeedService.FeedEntry last = page.get(page.size() - 1);
+            nextCursor = PostCursor.encode(last.createdAt(), last.postId());
+        }
+
+        return GroupFeedResponseDto.builder()
+                .posts(result)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Курсор по постам: "микросекунды createdAt:id" последнего поста предыдущей страницы
+     */
+    private record PostCursor(Instant before, long beforeId) {
+
+        // Первая страница: позже любого поста
+        private static final PostCursor START = new PostCursor(Instant.parse("9999-12-31T23:59:59Z"), Long.MAX_VALUE);
+
+        private static PostCursor parse(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return START;
+            }
+            try {
+                String[] parts = cursor.split(":", 2);
+                return new PostCursor(Instant.EPOCH.plus(Long.parseLong(parts[0]), ChronoUnit.MICROS),
+                        Long.parseLong(parts[1]));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Некорректный курсор ленты");
+            }
+        }
+
+        private static String encode(Instant createdAt, Long postId) {
+            return ChronoUnit.MICROS.between(Instant.EPOCH, createdAt) + ":" + postId;
+        }
     }
 
     /**
@@ -172,7 +272,9 @@ public class GroupPostService {
         groupPostRepository.delete(post);
 
         // Обновляем счетчик постов
-        updatePostsCount(post.getGroup().getId());
+        if (post.getStatus() == GroupPostStatus.PUBLISHED) {
+            groupRepository.incrementPostsCount(post.getGroup().getId(), -1);
+        }
     }
 
     /**
@@ -185,64 +287,76 @@ public class GroupPostService {
         GroupPostEntity post = groupPostRepository.findById(postId)
                 .orElseThrow(() -> new RuntimeException("Пост не найден"));
 
-        UserEntity user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
+        // Проверяем доступ к группе
+        groupAccessService.checkAccess(post.getGroup(), userId);
+
+        applyLike(post, userId, !groupPostLikeRepository.existsByPostIdAndUserId(postId, userId));
+
+        return getLikeResult(post, userId);
+    }
+
+    /**
+     * Поставить или убрать лайк (идемпотентно)
+     */
+    @Transactional
+    public GroupPostResponseDto setLike(Long postId, Long userId, boolean liked) {
+        log.info("Лайк поста {} пользователем {}: {}", postId, userId, liked);
+
+        GroupPostEntity post = groupPostRepository.findById(postId)
+                .orElseThrow(() -> new RuntimeException("Пост не найден"));
 
         // Проверяем доступ к группе
-        checkGroupAccess(post.getGroup(), userId);
-
-        // Ищем существующий лайк
-        Optional<GroupPostLikeEntity> existingLike = post.getLikes().stream()
-                .filter(like -> like.getUser().getId().equals(userId))
-                .findFirst();
-
-        if (existingLike.isPresent()) {
-            // Убираем лайк
-            post.getLikes().remove(existingLike.get());
-            post.setLikesCount(Math.max(0, post.getLikesCount() - 1));
-        } else {
-            // Ставим лайк
-            GroupPostLikeEntity like = GroupPostLikeEntity.builder()
-                    .post(post)
-                    .user(user)
-                    .build();
-            post.getLikes().add(like);
-            post.setLikesCount(post.getLikesCount() + 1);
-        }
+        groupAccessService.checkAccess(post.getGroup(), userId);
 
-        GroupPostEntity updatedPost = groupPostRepository.save(post);
-        return enrichWithLikedByMe(groupMapper.toPostResponseDto(updatedPost), userId);
+        applyLike(post, userId, liked);
+
+        return getLikeResult(post, userId);
+    }
+
+    // Счетчик лайков менялся в обход контекста - берем его из БД
+    private GroupPostResponseDto getLikeResult(GroupPostEntity post, Long userId) {
+        GroupPostResponseDto dto = groupMapper.toPostResponseDto(post);
+        dto.setLikesCount(groupPostRepository.findLikesCount(post.getId()));
+        return enrichWithLikedByMe(dto, userId);
     }
 
     // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
 
     private GroupPostResponseDto enrichWithLikedByMe(GroupPostResponseDto dto, Long userId) {
         if (userId != null) {
-            groupPostRepository.findById(dto.getId()).ifPresent(post -> {
-                boolean likedByMe = post.getLikes().stream()
-                        .anyMatch(like -> like.getUser().getId().equals(userId));
-                dto.setLikedByMe(likedByMe);
-            });
+            dto.setLikedByMe(groupPostLikeRepository.existsByPostIdAndUserId(dto.getId(), userId));
         }
         return dto;
     }
 
-    private void checkGroupAccess(GroupEntity group, Long userId) {
-        if (group.getIsPublic()) {
-            return; // Публичные группы доступны всем
-        }
+    // Страница постов: лайки пользователя определяются одним IN-запросом на всю страницу
+    private Page<GroupPostResponseDto> toResponsePage(Page<GroupPostEntity> posts, Long userId) {
+        Page<GroupPostResponseDto> page = posts.map(groupMapper::toPostResponseDto);
+        enrichWithLikedByMe(page.getContent(), userId);
+        return page;
+    }
 
-        if (!group.isMember(userId)) {
-            throw new RuntimeException("Доступ к группе запрещен");
+    private void enrichWithLikedByMe(List<GroupPostResponseDto> dtos, Long userId) {
+        if (userId != null && !dtos.isEmpty()) {
+            List<Long> postIds = dtos.stream().map(GroupPostResponseDto::getId).toList();
+            Set<Long> liked = groupPostLikeRepository.findLikedPostIds(userId, postIds);
+            dtos.forEach(dto -> dto.setLikedByMe(liked.contains(dto.getId())));
         }
     }
 
-    private void updatePostsCount(Long groupId) {
-        long count = groupPostRepository.countByGroupIdAndStatus(groupId, GroupPostStatus.PUBLISHED);
-        groupRepository.findById(groupId).ifPresent(group -> {
-            group.setPostsCount((int) count);
-            groupRepository.save(group);
-        });
+    /**
+     * Поставить или снять лайк. Вставка/удаление строки лайка решают, менять ли счетчик,
+     * поэтому повторы и гонки не сбивают likesCount.
+     */
+    private void applyLike(GroupPostEntity post, Long userId, boolean liked) {
+        if (liked) {
+            if (groupPostLikeRepository.insertIfAbsent(post.getId(), userId) > 0) {
+                groupPostRepository.incrementLikesCount(post.getId(), 1);
+                groupActivityCounters.recordLike(post.getGroup().getId());
+            }
+        } else if (groupPostLikeRepository.deleteByPostIdAndUserId(post.getId(), userId) > 0) {
+            groupPostRepository.incrementLikesCount(post.getId(), -1);
+        }
     }
 
     /**
@@ -257,13 +371,13 @@ public class GroupPostService {
         GroupEntity group = groupRepository.findById(groupId)
                 .orElseThrow(() -> new RuntimeException("Группа не найдена"));
 
-        checkGroupAccess(group, userId);
+        groupAccessService.checkAccess(group, userId);
 
         // Получаем посты
         Page<GroupPostEntity> posts = groupPostRepository.findByGroupIdAndType(
                 groupId, type, pageable);
 
-        return posts.map(post -> enrichWithLikedByMe(groupMapper.toPostResponseDto(post), userId));
+        return toResponsePage(posts, userId);
     }
 
     /**
@@ -274,23 +388,35 @@ public class GroupPostService {
                                                        Pageable pageable) {
         log.info("Получение постов автора {} для пользователя {}", authorId, currentUserId);
 
-        // Получаем посты автора
-        Page<GroupPostEntity> posts = groupPostRepository.findByAuthorId(authorId, pageable);
-
-        // Фильтруем только те посты, к которым есть доступ
-        List<GroupPostEntity> accessiblePosts = posts.stream()
-                .filter(post -> {
-                    try {
-                        checkGroupAccess(post.getGroup(), currentUserId);
-                        return true;
-                    } catch (RuntimeException e) {
-                        return false;
-                    }
-                })
-                .collect(Collectors.toList());
-
-        return new PageImpl<>(accessiblePosts, pageable, accessiblePosts.size())
-                .map(post -> enrichWithLikedByMe(groupMapper.toPostResponseDto(post), currentUserId));
+        // Видимость (публичная группа или членство) проверяется в запросе, страницы полные
+        Page<GroupPostEntity> posts = groupPostRepository.findVisibleByAuthor(authorId, currentUserId, pageable);
+        return toResponsePage(posts, currentUserId);
+    }
+
+    /**
+     * Получить посты пользователя во всех группах с курсорной пагинацией
+     */
+    @Transactional(readOnly = true)
+    public GroupFeedResponseDto getPostsByAuthorTimeline(Long authorId, Long currentUserId, String cursor, int limit) {
+        log.info("Получение постов автора {} для пользователя {}, курсор: {}", authorId, currentUserId, cursor);
+
+        int size = Math.max(1, Math.min(limit, MAX_FEED_PAGE_SIZE));
+        PostCursor position = PostCursor.parse(cursor);
+
+        List<GroupPostEntity> posts = groupPostRepository.findVisibleByAuthorBefore(
+                authorId, currentUserId, position.before(), position.beforeId(), PageRequest.of(0, size + 1));
+        boolean hasMore = posts.size() > size;
+        List<GroupPostEntity> page = hasMore ? posts.subList(0, size) : posts;
+
+        List<GroupPostResponseDto> result = page.stream().map(groupMapper::toPostResponseDto).toList();
+        enrichWithLikedByMe(result, currentUserId);
+
+        GroupPostEntity last = hasMore ? page.get(page.size() - 1) : null;
+        return GroupFeedResponseDto.builder()
+                .posts(result)
+                .nextCursor(last != null ? PostCursor.encode(last.getCreatedAt(), last.getId()) : null)
+                .hasMore(hasMore)
+                .build();
     }
 
     /**
@@ -304,13 +430,13 @@ public class GroupPostService {
         GroupEntity group = groupRepository.findById(groupId)
                 .orElseThrow(() -> new RuntimeException("Группа не найдена"));
 
-        checkGroupAccess(group, userId);
+        groupAccessService.checkAccess(group, userId);
 
         // Получаем посты, отсортированные по количеству лайков
         Page<GroupPostEntity> posts = groupPostRepository.findPopularPostsByGroupId(
                 groupId, pageable);
 
-        return posts.map(post -> enrichWithLikedByMe(groupMapper.toPostResponseDto(post), userId));
+        return toResponsePage(posts, userId);
     }
 
     /**
@@ -326,13 +452,13 @@ public class GroupPostService {
         GroupEntity group = groupRepository.findById(groupId)
                 .orElseThrow(() -> new RuntimeException("Группа не найдена"));
 
-        checkGroupAccess(group, userId);
+        groupAccessService.checkAccess(group, userId);
 
         // Получаем посты за период
         Page<GroupPostEntity> posts = groupPostRepository.findByGroupIdAndCreatedAtBetween(
                 groupId, startDate, endDate, pageable);
 
-        return posts.map(post -> enrichWithLikedByMe(groupMapper.toPostResponseDto(post), userId));
+        return toResponsePage(posts, userId);
     }
 
     /**
@@ -350,6 +476,6 @@ public class GroupPostService {
         Page<GroupPostEntity> drafts = groupPostRepository.findByGroupIdAndAuthorIdAndStatus(
                 groupId, userId, GroupPostStatus.DRAFT, pageable);
 
-        return drafts.map(post -> enrichWithLikedByMe(groupMapper.toPostResponseDto(post), userId));
+        return toResponsePage(drafts, userId);
     }
 }
\ No newline at end of file
@@ -25,6 +25,7 @@ import ru.messenger.user_service.domain.service.exception.UserNotFoundException;
 
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,6 +40,10 @@ public class GroupService {
     private final GroupMemberRepository groupMemberRepository;
     private final UserRepository userRepository;
     private final GroupMapper groupMapper;
+    private final GroupActivityCounters groupActivityCounters;
+    private final GroupFeedService groupFeedService;
+    private final GroupAccessService groupAccessService;
+    private final GroupMembershipService groupMembershipService;
 
     /**
      * Создать новую группу
@@ -58,11 +63,15 @@ public class GroupService {
         GroupEntity savedGroup = groupRepository.save(group);
 
         // Добавляем создателя как владельца
-        addMember(savedGroup, creator, GroupMemberRole.OWNER, true, true, true, true);
+        groupMemberRepository.save(buildMember(savedGroup, creator, GroupMemberRole.OWNER, true, true, true, true));
+        groupActivityCounters.recordJoins(savedGroup.getId(), 1);
 
-        // Добавляем начальных участников если есть
+        // Добавляем начальных участников одной массовой вставкой, счетчик увеличивается там же
         if (requestDto.getInitialMembers() != null && !requestDto.getInitialMembers().isEmpty()) {
-            addInitialMembers(savedGroup, creator, requestDto.getInitialMembers());
+            Set<Long> userIds = new HashSet<>(requestDto.getInitialMembers());
+            userIds.remove(creatorId);
+            int added = groupMembershipService.addMembers(savedGroup, userIds).size();
+            savedGroup.setMembersCount(1 + added);
         }
 
         log.info("Создана группа ID: {}", savedGroup.getId());
@@ -80,7 +89,7 @@ public class GroupService {
                 .orElseThrow(() -> new RuntimeException("Группа не найдена"));
 
         // Проверяем доступ
-        checkGroupAccess(group, userId);
+        groupAccessService.checkAccess(group, userId);
 
         return groupMapper.toResponseDto(group);
     }
@@ -96,7 +105,7 @@ public class GroupService {
                 .orElseThrow(() -> new RuntimeException("Группа не найдена"));
 
         // Проверяем права доступа
-        if (!group.isOwner(userId) && !group.isAdmin(userId)) {
+        if (!group.isOwner(userId) && !groupAccessService.isAdmin(groupId, userId)) {
             throw new RuntimeException("Нет прав для редактирования группы");
         }
 
@@ -172,11 +181,17 @@ public class GroupService {
             throw new RuntimeException("Владелец не может покинуть группу. Передайте права или удалите группу");
         }
 
+        boolean wasActive = member.getStatus() == GroupMemberStatus.ACTIVE;
         member.setStatus(GroupMemberStatus.LEFT);
         groupMemberRepository.save(member);
+        groupFeedService.onMemberLeft(groupId, userId);
+        groupAccessService.invalidate(groupId, userId);
 
         // Обновляем счетчик участников
-        updateMembersCount(groupId);
+        if (wasActive) {
+            groupRepository.incrementMembersCount(groupId, -1);
+            groupActivityCounters.recordLeave(groupId);
+        }
     }
 
     /**
@@ -243,11 +258,17 @@ public class GroupService {
             throw new RuntimeException("Нельзя удалить пользователя с равными или большими правами");
         }
 
+        boolean wasActive = targetMember.getStatus() == GroupMemberStatus.ACTIVE;
         targetMember.setStatus(GroupMemberStatus.BANNED);
         groupMemberRepository.save(targetMember);
+        groupFeedService.onMemberLeft(groupId, targetUserId);
+        groupAccessService.invalidate(groupId, targetUserId);
 
         // Обновляем счетчик участников
-        updateMembersCount(groupId);
+        if (wasActive) {
+            groupRepository.incrementMembersCount(groupId, -1);
+            groupActivityCounters.recordLeave(groupId);
+        }
     }
 
     /**
@@ -261,7 +282,7 @@ public class GroupService {
                 .orElseThrow(() -> new RuntimeException("Группа не найдена"));
 
         // Проверяем доступ
-        checkGroupAccess(group, userId);
+        groupAccessService.checkAccess(group, userId);
 
         Page<GroupMemberEntity> members = groupMemberRepository.findByGroupId(groupId, pageable);
         return members.map(groupMapper::toMemberResponseDto);
@@ -305,6 +326,7 @@ public class GroupService {
         targetMember.setCanManagePosts(newRole == GroupMemberRole.ADMIN || newRole == GroupMemberRole.MODERATOR || newRole == GroupMemberRole.OWNER);
 
         GroupMemberEntity updated = groupMemberRepository.save(targetMember);
+        groupAccessService.invalidate(groupId, targetUserId);
         return groupMapper.toMemberResponseDto(updated);
     }
 
@@ -345,6 +367,8 @@ public class GroupService {
         newOwnerMember.setCanManagePosts(true);
 
         groupMemberRepository.saveAll(List.of(currentOwnerMember, newOwnerMember));
+        groupAccessService.invalidate(groupId, currentOwnerId);
+        groupAccessService.invalidate(groupId, newOwnerId);
 
         // Обновляем владельца в группе
         UserEntity newOwner = userRepository.findById(newOwnerId)
@@ -380,7 +404,24 @@ public class GroupService {
                                         GroupMemberRole role,
                                         Boolean canPost, Boolean canInvite,
                                         Boolean canManageUsers, Boolean canManagePosts) {
-        GroupMemberEntity member = GroupMemberEntity.builder()
+        GroupMemberEntity member = buildMember(group, user, role, canPost, canInvite, canManageUsers, canManagePosts);
+
+        GroupMemberEntity savedMember = groupMemberRepository.save(member);
+
+        // Обновляем счетчик участников
+        groupRepository.incrementMembersCount(group.getId(), 1);
+        groupActivityCounters.recordJoins(group.getId(), 1);
+        groupFeedService.onMemberJoined(group, user.getId());
+        groupAccessService.invalidate(group.getId(), user.getId());
+
+        return savedMember;
+    }
+
+    private GroupMemberEntity buildMember(GroupEntity group, UserEntity user,
+                                         GroupMemberRole role,
+                                         Boolean canPost, Boolean canInvite,
+                                         Boolean canManageUsers, Boolean canManagePosts) {
+        return GroupMemberEntity.builder()
                 .group(group)
                 .user(user)
                 .role(role)
@@ -392,45 +433,6 @@ public class GroupService {
                 .canManagePosts(canManagePosts)
                 .joinedAt(Instant.now())
                 .build();
-
-        GroupMemberEntity savedMember = groupMemberRepository.save(member);
-
-        // Обновляем счетчик участников
-        updateMembersCount(group.getId());
-
-        return savedMember;
-    }
-
-    private void addInitialMembers(GroupEntity group, UserEntity inviter, Set<Long> userIds) {
-        for (Long userId : userIds) {
-            if (userId.equals(inviter.getId())) {
-                continue; // Пропускаем создателя
-            }
-
-            userRepository.findById(userId).ifPresent(user -> {
-                if (!groupMemberRepository.existsByGroupIdAndUserId(group.getId(), userId)) {
-                    addMember(group, user, GroupMemberRole.MEMBER, true, false, false, false);
-                }
-            });
-        }
-    }
-
-    private void updateMembersCount(Long groupId) {
-        long count = groupMemberRepository.countByGroupIdAndStatus(groupId, GroupMemberStatus.ACTIVE);
-        groupRepository.findById(groupId).ifPresent(group -> {
-            group.setMembersCount((int) count);
-            groupRepository.save(group);
-        });
-    }
-
-    private void checkGroupAccess(GroupEntity group, Long userId) {
-        if (group.getIsPublic()) {
-            return; // Публичные группы доступны всем
-        }
-
-        if (!group.isMember(userId)) {
-            throw new RuntimeException("Доступ к группе запрещен");
-        }
     }
 
     /**
@@ -496,7 +498,7 @@ public class GroupService {
         GroupEntity group = groupRepository.findById(groupId)
                 .orElseThrow(() -> new RuntimeException("Группа не найдена"));
 
-        if (!group.isMember(userId)) {
+        if (!groupAccessService.isMember(groupId, userId)) {
             throw new RuntimeException("Доступ запрещен");
         }
 
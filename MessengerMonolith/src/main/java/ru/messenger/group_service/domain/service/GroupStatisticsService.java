@@ -2,17 +2,19 @@ package ru.messenger.group_service.domain.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.messenger.common.NativeQueryValues;
+import ru.messenger.group_service.api.dto.response.GroupActivityDayResponseDto;
 import ru.messenger.group_service.domain.entity.enums.GroupMemberStatus;
+import ru.messenger.group_service.domain.entity.enums.GroupType;
 import ru.messenger.group_service.domain.repository.*;
 
 import java.time.Instant;
 import java.time.LocalDate;
-import java.time.ZoneId;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.ZoneOffset;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,46 +22,84 @@ import java.util.stream.Collectors;
 @Slf4j
 public class GroupStatisticsService {
 
+    // Сколько групп держать в рейтинге
+    private static final int LEADERBOARD_SIZE = 100;
+
+    // Максимальная длина ряда дневной активности
+    private static final int MAX_SERIES_DAYS = 366;
+
     private final GroupRepository groupRepository;
     private final GroupMemberRepository groupMemberRepository;
     private final GroupPostRepository groupPostRepository;
     private final GroupCommentRepository groupCommentRepository;
+    private final GroupAccessService groupAccessService;
+
+    // Насколько устаревшую статистику можно отдавать из памяти
+    @Value("${group.stats.max-staleness-ms:60000}")
+    private long maxStalenessMs;
+
+    private volatile Cached<Map<String, Object>> platformStatistics;
+    private volatile Cached<List<Map<String, Object>>> topActiveGroups;
+
+    /**
+     * Рассчитанное значение и момент расчета
+     */
+    private record Cached<T>(T value, long computedAt) {
+    }
 
     /**
      * Получить общую статистику платформы
+     * Считается не чаще раза за group.stats.max-staleness-ms, между пересчетами отдается из памяти.
      */
     @Transactional(readOnly = true)
     public Map<String, Object> getPlatformStatistics() {
-        log.info("Получение статистики платформы");
+        Cached<Map<String, Object>> cached = platformStatistics;
+        if (cached != null && isFresh(cached)) {
+            return cached.value();
+        }
+
+        synchronized (this) {
+            cached = platformStatistics;
+            if (cached != null && isFresh(cached)) {
+                return cached.value();
+            }
+            Map<String, Object> stats = Collections.unmodifiableMap(computePlatformStatistics());
+            platformStatistics = new Cached<>(stats, System.currentTimeMillis());
+            return stats;
+        }
+    }
+
+    private Map<String, Object> computePlatformStatistics() {
+        log.info("Пересчет статистики платформы");
 
         Map<String, Object> stats = new HashMap<>();
 
         // Общая статистика
-        stats.put("totalGroups", groupRepository.count());
         stats.put("totalPosts", groupPostRepository.count());
         stats.put("totalComments", groupCommentRepository.count());
 
-        // Статистика по типам групп
+        // Статистика по типам групп - одним запросом
         Map<String, Long> groupsByType = new HashMap<>();
-        groupsByType.put("GROUP", groupRepository.countByType(
-                ru.messenger.group_service.domain.entity.enums.GroupType.GROUP));
-        groupsByType.put("CHANNEL", groupRepository.countByType(
-                ru.messenger.group_service.domain.entity.enums.GroupType.CHANNEL));
-        groupsByType.put("COMMUNITY", groupRepository.countByType(
-                ru.messenger.group_service.domain.entity.enums.GroupType.COMMUNITY));
-
+        for (GroupType type : GroupType.values()) {
+            groupsByType.put(type.name(), 0L);
+        }
+        long totalGroups = 0;
+        for (Object[] row : groupRepository.countGroupsByType()) {
+            long count = ((Number) row[1]).longValue();
+            groupsByType.put(((GroupType) row[0]).name(), count);
+            totalGroups += count;
+        }
+        stats.put("totalGroups", totalGroups);
         stats.put("groupsByType", groupsByType);
 
-        // Активность за последние 30 дней
+        // Активность за последние 30 дней - из дневной статистики
         Instant monthAgo = Instant.now().minusSeconds(30 * 24 * 60 * 60);
+        Object[] activity = groupRepository.sumActivitySince(today().minusDays(30)).get(0);
 
-        long newGroupsLastMonth = groupRepository.countByCreatedAtAfter(monthAgo);
-        long newPostsLastMonth = groupPostRepository.countByCreatedAtAfter(monthAgo);
-        long newCommentsLastMonth = groupCommentRepository.countByCreatedAtAfter(monthAgo);
-
-        stats.put("newGroupsLastMonth", newGroupsLastMonth);
-        stats.put("newPostsLastMonth", newPostsLastMonth);
-        stats.put("newCommentsLastMonth", newCommentsLastMonth);
+        stats.put("newGroupsLastMonth", groupRepository.countByCreatedAtAfter(monthAgo));
+        stats.put("newPostsLastMonth", ((Number) activity[0]).longValue());
+        stats.put("newCommentsLastMonth", ((Number) activity[1]).longValue());
+        stats.put("calculatedAt", Instant.now());
 
         return stats;
     }
@@ -74,7 +114,7 @@ public class GroupStatisticsService {
                 groupId, startDate, endDate, userId);
 
         // Проверяем права (только участники группы)
-        boolean isMember = groupMemberRepository.existsByGroupIdAndUserId(groupId, userId);
+        boolean isMember = groupAccessService.isMember(groupId, userId);
         if (!isMember) {
             throw new RuntimeException("Доступ запрещен");
         }
@@ -105,6 +145,42 @@ public class GroupStatisticsService {
         return stats;
     }
 
+    /**
+     * Дневная активность группы за период [from, to] (UTC), по точке на каждый день
+     */
+    @Transactional(readOnly = true)
+    public List<GroupActivityDayResponseDto> getGroupActivitySeries(Long groupId, LocalDate from,
+                                                                    LocalDate to, Long userId) {
+        boolean isMember = groupAccessService.isMember(groupId, userId);
+        if (!isMember) {
+            throw new RuntimeException("Доступ запрещен");
+        }
+
+        LocalDate toDay = to != null ? to : today();
+        LocalDate fromDay = from != null ? from : toDay.minusDays(29);
+        if (fromDay.isAfter(toDay)) {
+            throw new RuntimeException("Начало периода позже конца");
+        }
+        if (fromDay.isBefore(toDay.minusDays(MAX_SERIES_DAYS - 1))) {
+            fromDay = toDay.minusDays(MAX_SERIES_DAYS - 1);
+        }
+
+        List<Object[]> rows = groupRepository.findActivitySeries(groupId, fromDay, toDay);
+        List<GroupActivityDayResponseDto> series = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            series.add(GroupActivityDayResponseDto.builder()
+                    .day(toLocalDate(row[0]))
+                    .posts(((Number) row[1]).longValue())
+                    .comments(((Number) row[2]).longValue())
+                    .likes(((Number) row[3]).longValue())
+                    .joins(((Number) row[4]).longValue())
+                    .leaves(((Number) row[5]).longValue())
+                    .activeMembers(((Number) row[6]).longValue())
+                    .build());
+        }
+        return series;
+    }
+
     /**
      * Получить статистику пользователя в группе
      */
@@ -166,34 +242,50 @@ public class GroupStatisticsService {
     }
 
     /**
-     * Получить топ активных групп - ИСПРАВЛЕНО
+     * Получить топ активных групп
+     * Рейтинг за 30 дней строится по group_activity_daily и держится в памяти
+     * не дольше group.stats.max-staleness-ms.
      */
     @Transactional(readOnly = true)
     public List<Map<String, Object>> getTopActiveGroups(int limit) {
-        log.info("Получение топ {} активных групп", limit);
-
-        // Используем метод findTopActiveGroups который теперь существует
-        List<ru.messenger.group_service.domain.entity.GroupEntity> groups =
-                groupRepository.findTopActiveGroups(limit);
-
-        return groups.stream()
-                .map(group -> {
-                    Map<String, Object> groupStats = new HashMap<>();
-                    groupStats.put("groupId", group.getId());
-                    groupStats.put("groupName", group.getName());
-                    groupStats.put("groupType", group.getType());
-                    groupStats.put("postsCount", group.getPostsCount());
-                    groupStats.put("membersCount", group.getMembersCount());
-                    groupStats.put("createdAt", group.getCreatedAt());
-
-                    // Можно добавить дополнительную статистику
-                    long recentPosts = groupPostRepository.countByGroupIdAndCreatedAtAfter(
-                            group.getId(), Instant.now().minusSeconds(7 * 24 * 60 * 60));
-                    groupStats.put("recentPostsLast7Days", recentPosts);
-
-                    return groupStats;
-                })
-                .collect(Collectors.toList());
+        int size = Math.max(1, Math.min(limit, LEADERBOARD_SIZE));
+
+        Cached<List<Map<String, Object>>> cached = topActiveGroups;
+        if (cached == null || !isFresh(cached)) {
+            synchronized (this) {
+                cached = topActiveGroups;
+                if (cached == null || !isFresh(cached)) {
+                    cached = new Cached<>(computeTopActiveGroups(), System.currentTimeMillis());
+                    topActiveGroups = cached;
+                }
+            }
+        }
+
+        List<Map<String, Object>> leaderboard = cached.value();
+        return leaderboard.subList(0, Math.min(size, leaderboard.size()));
+    }
+
+    private List<Map<String, Object>> computeTopActiveGroups() {
+        log.info("Пересчет рейтинга активных групп");
+
+        LocalDate today = today();
+        List<Object[]> rows = groupRepository.findActivityLeaderboard(
+                today.minusDays(30), today.minusDays(7), LEADERBOARD_SIZE);
+
+        List<Map<String, Object>> leaderboard = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Map<String, Object> groupStats = new HashMap<>();
+            groupStats.put("groupId", ((Number) row[0]).longValue());
+            groupStats.put("groupName", row[1]);
+            groupStats.put("groupType", GroupType.valueOf((String) row[2]));
+            groupStats.put("postsCount", row[3]);
+            groupStats.put("membersCount", row[4]);
+            groupStats.put("createdAt", NativeQueryValues.toInstant(row[5]));
+            groupStats.put("totalActivity", ((Number) row[6]).longValue());
+            groupStats.put("recentPostsLast7Days", ((Number) row[7]).longValue());
+            leaderboard.add(Collections.unmodifiableMap(groupStats));
+        }
+        return Collections.unmodifiableList(leaderboard);
     }
 
     /**
@@ -205,7 +297,7 @@ public class GroupStatisticsService {
                 limit, groupId, userId);
 
         // Проверяем права (только участники группы)
-        boolean isMember = groupMemberRepository.existsByGroupIdAndUserId(groupId, userId);
+        boolean isMember = groupAccessService.isMember(groupId, userId);
         if (!isMember) {
             throw new RuntimeException("Доступ запрещен");
         }
@@ -234,30 +326,34 @@ public class GroupStatisticsService {
 
     // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
 
-    private Map<LocalDate, Long> getActivityByDay(Long groupId, Instant startDate, Instant endDate) {
-        // Получаем посты по дням
-        List<Object[]> postsByDay = groupPostRepository.countPostsByDay(groupId, startDate, endDate);
+    private boolean isFresh(Cached<?> cached) {
+        return System.currentTimeMillis() - cached.computedAt() < maxStalenessMs;
+    }
 
-        // Получаем комментарии по дням
-        List<Object[]> commentsByDay = groupCommentRepository.countCommentsByDay(groupId, startDate, endDate);
+    // Дневная статистика ведется в UTC
+    private LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
 
-        // Объединяем результаты
-        Map<LocalDate, Long> activityMap = new HashMap<>();
+    // Посты и комментарии по дням - из дневной статистики
+    private Map<LocalDate, Long> getActivityByDay(Long groupId, Instant startDate, Instant endDate) {
+        List<Object[]> rows = groupRepository.findActivitySeries(groupId,
+                LocalDate.ofInstant(startDate, ZoneOffset.UTC), LocalDate.ofInstant(endDate, ZoneOffset.UTC));
 
-        // Добавляем посты
-        for (Object[] result : postsByDay) {
-            LocalDate date = ((java.sql.Date) result[0]).toLocalDate();
-            Long count = ((Number) result[1]).longValue();
-            activityMap.put(date, activityMap.getOrDefault(date, 0L) + count);
+        Map<LocalDate, Long> activityMap = new HashMap<>();
+        for (Object[] row : rows) {
+            long count = ((Number) row[1]).longValue() + ((Number) row[2]).longValue();
+            if (count > 0) {
+                activityMap.put(toLocalDate(row[0]), count);
+            }
         }
+        return activityMap;
+    }
 
-        // Добавляем комментарии
-        for (Object[] result : commentsByDay) {
-            LocalDate date = ((java.sql.Date) result[0]).toLocalDate();
-            Long count = ((Number) result[1]).longValue();
-            activityMap.put(date, activityMap.getOrDefault(date, 0L) + count);
+    private LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate date) {
+            return date;
         }
-
-        return activityMap;
+        return ((java.sql.Date) value).toLocalDate();
     }
 }
\ No newline at end of file
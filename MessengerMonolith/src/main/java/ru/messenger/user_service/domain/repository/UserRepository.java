@@ -1,5 +1,6 @@
 package ru.messenger.user_service.domain.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -76,4 +77,25 @@ public interface UserRepository extends JpaRepository<UserEntity,Long> {
             "AND u.id != :excludeId")
     List<UserEntity> searchUsersExcluding(@Param("query") String query, @Param("excludeId") Long excludeId);
 
+    // Поиск по триграммным индексам с ранжированием: точное совпадение > префикс > подстрока
+    // [id, login, username, email, avatar_url]
+    @Query(value = "SELECT u.id, u.login, u.username, u.email, u.avatar_url FROM users u " +
+            "WHERE (LOWER(u.login) LIKE :pattern OR LOWER(u.username) LIKE :pattern OR LOWER(u.email) LIKE :pattern) " +
+            "AND u.id <> :excludeId " +
+            "ORDER BY CASE " +
+            "WHEN LOWER(u.login) = :query OR LOWER(u.username) = :query OR LOWER(u.email) = :query THEN 0 " +
+            "WHEN LOWER(u.login) LIKE :prefix OR LOWER(u.username) LIKE :prefix OR LOWER(u.email) LIKE :prefix THEN 1 " +
+            "ELSE 2 END, LENGTH(u.username), u.id " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<Object[]> searchUserSummaries(@Param("query") String query,
+                                       @Param("pattern") String pattern,
+                                       @Param("prefix") String prefix,
+                                       @Param("excludeId") Long excludeId,
+                                       @Param("limit") int limit);
+
+    // Краткие данные пользователей без текущего: [id, login, username, avatar_url]
+    @Query("SELECT u.id, u.login, u.username, u.avatarUrl FROM UserEntity u WHERE u.id <> :excludeId ORDER BY u.id")
+    List<Object[]> findUserSummariesExcluding(@Param("excludeId") Long excludeId, Pageable pageable);
+
 }
@@ -0,0 +1,13 @@
+package ru.messenger.user_service.domain.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** Минимальные данные пользователя для обработчиков WebSocket: id и отображаемое имя */
+@Getter
+@AllArgsConstructor
+public class UserIdentity {
+    private final Long id;
+    private final String login;
+    private final String username;
+}
@@ -0,0 +1,113 @@
+package ru.messenger.user_service.domain.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.messenger.user_service.domain.entity.UserEntity;
+import ru.messenger.user_service.domain.repository.UserRepository;
+import ru.messenger.user_service.domain.service.exception.UserNotFoundException;
+
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш login -> (id, отображаемое имя) для STOMP-обработчиков.
+ * Заполняется при STOMP CONNECT, сбрасывается при изменении профиля.
+ * При chat.broker.mode=relay сброс виден только своему узлу, поэтому запись живет
+ * не дольше user.identity-cache.relay-ttl-ms.
+ */
+@Slf4j
+@Component
+public class UserIdentityCache {
+
+    // Атрибут STOMP-сессии с пользователем, определенным при CONNECT
+    public static final String SESSION_ATTRIBUTE = "userIdentity";
+
+    private final UserRepository userRepository;
+    private final Map<String, Cached> identities;
+    private final long ttlMs;
+
+    public UserIdentityCache(UserRepository userRepository,
+                             @Value("${user.identity-cache.max-size:50000}") int maxSize,
+                             @Value("${user.identity-cache.relay-ttl-ms:60000}") long relayTtlMs,
+                             @Value("${chat.broker.mode:simple}") String brokerMode) {
+        this.userRepository = userRepository;
+        this.ttlMs = "relay".equalsIgnoreCase(brokerMode) ? relayTtlMs : Long.MAX_VALUE;
+        this.identities = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private record Cached(UserIdentity identity, long loadedAt) {
+    }
+
+    /**
+     * Получить пользователя по логину (из кэша, при промахе - из БД)
+     */
+    public UserIdentity get(String login) {
+        synchronized (identities) {
+            Cached cached = identities.get(login);
+            if (cached != null && System.currentTimeMillis() - cached.loadedAt() < ttlMs) {
+                return cached.identity();
+            }
+        }
+
+        UserEntity user = userRepository.findByLogin(login)
+                .orElseThrow(() -> new UserNotFoundException("Пользователь " + login + " не найден"));
+
+        String username = user.getUsername() != null && !user.getUsername().isBlank()
+                ? user.getUsername()
+                : user.getLogin();
+        UserIdentity identity = new UserIdentity(user.getId(), user.getLogin(), username);
+
+        synchronized (identities) {
+            identities.put(login, new Cached(identity, System.currentTimeMillis()));
+        }
+        return identity;
+    }
+
+    /**
+     * Пользователь STOMP-сессии: берется из атрибутов сессии, заполненных при CONNECT,
+     * при их отсутствии - из кэша (и сохраняется в сессию)
+     */
+    public UserIdentity get(Principal principal, Map<String, Object> sessionAttributes) {
+        if (sessionAttributes != null && sessionAttributes.get(SESSION_ATTRIBUTE) instanceof UserIdentity identity) {
+            return identity;
+        }
+
+        UserIdentity identity = get(principal.getName());
+        if (sessionAttributes != null) {
+            sessionAttributes.put(SESSION_ATTRIBUTE, identity);
+        }
+        return identity;
+    }
+
+    /**
+     * Сбросить пользователя (повторно - после коммита текущей транзакции)
+     */
+    public void evict(String login) {
+        remove(login);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(login);
+                }
+            });
+        }
+        log.debug("Пользователь {} удален из кэша", login);
+    }
+
+    private void remove(String login) {
+        synchronized (identities) {
+            identities.remove(login);
+        }
+    }
+}
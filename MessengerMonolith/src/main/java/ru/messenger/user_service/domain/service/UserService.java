@@ -25,6 +25,8 @@ public class UserService {
 
     private final PasswordEncoder passwordEncoder;
 
+    private final UserIdentityCache userIdentityCache;
+
 
     // Метод для авторизации пользователя и занесение в основную бд
     public UserResponseDto authUser(UserRequestDto user) {
@@ -123,6 +125,7 @@ public class UserService {
         }
         user.setUsername(newUsername);
         UserEntity updated = userRepository.save(user);
+        userIdentityCache.evict(login);
 
         log.info("Username успешно изменен: {} -> {}", login, newUsername);
         return userMapper.toResponseDto(updated);
@@ -146,6 +149,7 @@ public class UserService {
         }
 
         UserEntity updated = userRepository.save(user);
+        userIdentityCache.evict(user.getLogin());
         return userMapper.toResponseDto(updated);
     }
 
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -50,5 +51,17 @@ public interface UserContactRepository extends JpaRepository<UserContactEntity,
 
     long countByUserIdAndStatus(Long userId, ContactStatus status);
 
+    // Пары друзей для набора пользователей: [user_id, friend_id]
+    @Query("SELECT uc.user.id, uc.friend.id FROM UserContactEntity uc " +
+            "WHERE uc.status = 'ACCEPTED' AND (uc.user.id IN :userIds OR uc.friend.id IN :userIds)")
+    List<Object[]> findAcceptedPairs(@Param("userIds") Collection<Long> userIds);
+
+    // Связи пользователя с набором других пользователей в обе стороны: [id, user_id, friend_id, status]
+    @Query("SELECT uc.id, uc.user.id, uc.friend.id, uc.status FROM UserContactEntity uc " +
+            "WHERE (uc.user.id = :userId AND uc.friend.id IN :targetIds) " +
+            "OR (uc.friend.id = :userId AND uc.user.id IN :targetIds)")
+    List<Object[]> findContactsBetween(@Param("userId") Long userId,
+                                       @Param("targetIds") Collection<Long> targetIds);
+
     long countByFriendIdAndStatus(Long friendId, ContactStatus status);
 }
@@ -21,6 +21,12 @@ import java.util.stream.Collectors;
 @Transactional
 public class UserContactService {
 
+    // Сколько пользователей отдавать в поиске
+    private static final int USER_SEARCH_LIMIT = 20;
+
+    // Короче этого ищем только по началу login/username/email
+    private static final int MIN_SUBSTRING_SEARCH_LENGTH = 3;
+
     private final UserContactRepository userContactRepository;
     private final UserRepository userRepository;
     private final UserContactMapper userContactMapper;
@@ -246,27 +252,63 @@ public class UserContactService {
     // ==== Поиск и статусы ====
 
     // Поиск пользователей для добавления в друзья
+    @Transactional(readOnly = true)
     public List<UserSearchResponseDto> searchUsersForAdding(Long userId, String searchQuery) {
         try {
-            List<UserEntity> users = userRepository.searchUsersExcluding(searchQuery, userId);
-
-            return users.stream()
-                    .map(user -> {
-                        // Проверяем статус отношений
-                        Map<String, Object> status = checkFriendshipStatus(userId, user.getId());
-
-                        return UserSearchResponseDto.builder()
-                                .id(user.getId())
-                                .username(user.getUsername())
-                                .login(user.getLogin())
-                                .email(user.getEmail())
-                                .avatarUrl(user.getAvatarUrl())
-                                .friendshipStatus((String) status.get("status"))
-                                .contactId(status.containsKey("contactId") ?
-                                        ((Number) status.get("contactId")).longValue() : null)
-                                .build();
-                    })
-                    .collect(Collectors.toList());
+            String query = searchQuery == null ? "" : searchQuery.trim().toLowerCase();
+            if (query.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            // Спецсимволы LIKE ищем буквально; короткие запросы - только по префиксу
+            String escaped = query.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+            String prefix = escaped + "%";
+            String pattern = query.length() < MIN_SUBSTRING_SEARCH_LENGTH ? prefix : "%" + escaped + "%";
+
+            List<Object[]> rows = userRepository.searchUserSummaries(query, pattern, prefix, userId, USER_SEARCH_LIMIT);
+            if (rows.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            // Статусы отношений для всей выдачи одним запросом
+            List<Long> targetIds = rows.stream().map(row -> ((Number) row[0]).longValue()).toList();
+            Map<Long, Object[]> contacts = new HashMap<>();
+            for (Object[] contact : userContactRepository.findContactsBetween(userId, targetIds)) {
+                Long ownerId = (Long) contact[1];
+                Long otherId = ownerId.equals(userId) ? (Long) contact[2] : ownerId;
+                // Исходящая заявка важнее входящей (как в checkFriendshipStatus)
+                if (ownerId.equals(userId) || !contacts.containsKey(otherId)) {
+                    contacts.put(otherId, contact);
+                }
+            }
+
+            List<UserSearchResponseDto> result = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                Long targetId = ((Number) row[0]).longValue();
+                Object[] contact = contacts.get(targetId);
+
+                String friendshipStatus = "NONE";
+                Long contactId = null;
+                if (contact != null) {
+                    boolean outgoing = userId.equals(contact[1]);
+                    ContactStatus status = (ContactStatus) contact[3];
+                    friendshipStatus = status == ContactStatus.PENDING
+                            ? (outgoing ? "PENDING_OUTGOING" : "PENDING_INCOMING")
+                            : status.name();
+                    contactId = (Long) contact[0];
+                }
+
+                result.add(UserSearchResponseDto.builder()
+                        .id(targetId)
+                        .login((String) row[1])
+                        .username((String) row[2])
+                        .email((String) row[3])
+                        .avatarUrl((String) row[4])
+                        .friendshipStatus(friendshipStatus)
+                        .contactId(contactId)
+                        .build());
+            }
+            return result;
 
         } catch (Exception e) {
             log.error("Error searching users: {}", e.getMessage());
@@ -365,6 +407,25 @@ public class UserContactService {
                 .orElseThrow(() -> new UserNotFoundException("User not found"));
     }
 
+    // Друзья для набора пользователей одним запросом (для рассылки онлайн-статусов)
+    @Transactional(readOnly = true)
+    public Map<Long, Set<Long>> getFriendIds(Collection<Long> userIds) {
+        Set<Long> requested = new HashSet<>(userIds);
+        Map<Long, Set<Long>> friends = new HashMap<>();
+
+        for (Object[] row : userContactRepository.findAcceptedPairs(userIds)) {
+            Long userId = (Long) row[0];
+            Long friendId = (Long) row[1];
+            if (requested.contains(userId)) {
+                friends.computeIfAbsent(userId, id -> new HashSet<>()).add(friendId);
+            }
+            if (requested.contains(friendId)) {
+                friends.computeIfAbsent(friendId, id -> new HashSet<>()).add(userId);
+            }
+        }
+        return friends;
+    }
+
     // Проверить, являются ли пользователи друзьями
     public boolean areFriends(Long userId1, Long userId2) {
         try {
@@ -0,0 +1,20 @@
+package ru.messenger.user_service.presence_service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/** Пачка изменений статусов за один такт */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceBatchDto {
+    private String type; // USER_PRESENCE_BATCH
+    private List<PresenceStatusDto> updates;
+    private Instant timestamp;
+}
@@ -0,0 +1,73 @@
+package ru.messenger.user_service.presence_service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import ru.messenger.user_service.domain.service.UserIdentityCache;
+
+import java.security.Principal;
+
+@Slf4j
+@Controller
+@RequiredArgsConstructor
+public class PresenceController {
+
+    private final PresenceService presenceService;
+    private final UserIdentityCache userIdentityCache;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    /**
+     * Heartbeat клиента или явный выход (isOnline=false)
+     * Client: /app/presence.update
+     */
+    @MessageMapping("/presence.update")
+    public void updatePresence(@Payload PresenceRequestDto requestDto, Principal principal,
+                               SimpMessageHeaderAccessor headerAccessor) {
+        Long userId = userIdentityCache.get(principal, headerAccessor.getSessionAttributes()).getId();
+        if (Boolean.FALSE.equals(requestDto.getIsOnline())) {
+            presenceService.goOffline(userId);
+        } else {
+            presenceService.heartbeat(userId);
+        }
+    }
+
+    /**
+     * Запрос текущего статуса пользователя
+     * Client: /app/presence.request
+     * Reply: /topic/presence.{requesterId}
+     */
+    @MessageMapping("/presence.request")
+    public void requestPresence(@Payload PresenceRequestDto requestDto, Principal principal,
+                                SimpMessageHeaderAccessor headerAccessor) {
+        if (requestDto.getUserId() == null) {
+            return;
+        }
+        Long requesterId = userIdentityCache.get(principal, headerAccessor.getSessionAttributes()).getId();
+
+        messagingTemplate.convertAndSend(
+                "/topic/presence." + requesterId,
+                presenceService.getStatus(requestDto.getUserId())
+        );
+    }
+
+    /**
+     * Heartbeat для страниц без WebSocket
+     * POST /api/v1/presence/ping
+     */
+    @PostMapping("/api/v1/presence/ping")
+    @ResponseBody
+    public ResponseEntity<PresenceStatusDto> ping(@AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = userIdentityCache.get(userDetails.getUsername()).getId();
+        presenceService.heartbeat(userId);
+        return ResponseEntity.ok(presenceService.getStatus(userId));
+    }
+}
@@ -0,0 +1,18 @@
+package ru.messenger.user_service.presence_service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceRequestDto {
+    // presence.update
+    private Boolean isOnline;
+
+    // presence.request
+    private Long userId;
+}
@@ -0,0 +1,311 @@
+package ru.messenger.user_service.presence_service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.AbstractSubProtocolEvent;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import ru.messenger.chat_service.domain.repository.ChatRepository;
+import ru.messenger.user_service.domain.service.UserIdentityCache;
+import ru.messenger.user_service.mycontact_service.UserContactService;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Онлайн-статусы пользователей.
+ * Реестр в памяти разбит на секции по id пользователя (у каждой свой лок), питается событиями
+ * подключения/отключения STOMP и heartbeat-ами клиента. Изменения копятся и раз в такт
+ * рассылаются пачкой только заинтересованным: друзьям и собеседникам по небольшим чатам.
+ */
+@Slf4j
+@Service
+public class PresenceService {
+
+    public static final String UPDATE_TYPE = "USER_PRESENCE_UPDATE";
+    public static final String BATCH_TYPE = "USER_PRESENCE_BATCH";
+
+    // Сколько id отправлять в одном IN-запросе при поиске получателей
+    private static final int AUDIENCE_CHUNK_SIZE = 1000;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final UserIdentityCache userIdentityCache;
+    private final UserContactService userContactService;
+    private final ChatRepository chatRepository;
+
+    private final Stripe[] stripes;
+    private final long heartbeatTimeoutMs;
+    private final long reconnectGraceMs;
+    private final long offlineRetentionMs;
+    private final int maxChatSizeForFanout;
+
+    public PresenceService(SimpMessagingTemplate messagingTemplate,
+                           UserIdentityCache userIdentityCache,
+                           UserContactService userContactService,
+                           ChatRepository chatRepository,
+                           @Value("${presence.stripes:64}") int stripeCount,
+                           @Value("${presence.heartbeat-timeout-ms:90000}") long heartbeatTimeoutMs,
+                           @Value("${presence.reconnect-grace-ms:10000}") long reconnectGraceMs,
+                           @Value("${presence.offline-retention-ms:3600000}") long offlineRetentionMs,
+                           @Value("${presence.max-chat-size-for-fanout:200}") int maxChatSizeForFanout) {
+        this.messagingTemplate = messagingTemplate;
+        this.userIdentityCache = userIdentityCache;
+        this.userContactService = userContactService;
+        this.chatRepository = chatRepository;
+        this.heartbeatTimeoutMs = heartbeatTimeoutMs;
+        this.reconnectGraceMs = reconnectGraceMs;
+        this.offlineRetentionMs = offlineRetentionMs;
+        this.maxChatSizeForFanout = maxChatSizeForFanout;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        Long userId = resolveUserId(event);
+        if (userId != null) {
+            update(userId, +1);
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        Long userId = resolveUserId(event);
+        if (userId != null) {
+            update(userId, -1);
+        }
+    }
+
+    /**
+     * Heartbeat клиента (WebSocket или REST-пинг)
+     */
+    public void heartbeat(Long userId) {
+        update(userId, 0);
+    }
+
+    /**
+     * Явный выход клиента. Учитывается, только если других сессий у пользователя нет
+     */
+    public void goOffline(Long userId) {
+        long now = System.currentTimeMillis();
+        Stripe stripe = stripeFor(userId);
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(userId);
+            // Своя сессия, через которую пришел кадр, еще открыта
+            if (entry == null || entry.sessions > 1) {
+                return;
+            }
+            entry.away = true;
+            entry.activeUntil = now;
+            refresh(stripe, userId, entry, now);
+        }
+    }
+
+    public boolean isOnline(Long userId) {
+        Stripe stripe = stripeFor(userId);
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(userId);
+            return entry != null && entry.online;
+        }
+    }
+
+    /**
+     * Текущий статус пользователя
+     */
+    public PresenceStatusDto getStatus(Long userId) {
+        Stripe stripe = stripeFor(userId);
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(userId);
+            return entry != null
+                    ? toDto(userId, entry.online, entry.lastActiveAt)
+                    : toDto(userId, false, 0);
+        }
+    }
+
+    /**
+     * Такт: истекшие heartbeat-ы, очистка старых записей и рассылка накопленных изменений
+     */
+    @Scheduled(fixedDelayString = "${presence.tick-ms:2000}")
+    public void tick() {
+        long now = System.currentTimeMillis();
+        List<PresenceStatusDto> changes = new ArrayList<>();
+
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Map.Entry<Long, Entry>> it = stripe.entries.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Long, Entry> e = it.next();
+                    Entry entry = e.getValue();
+
+                    if (entry.online && !computeOnline(entry, now)) {
+                        entry.online = false;
+                        stripe.changed.add(e.getKey());
+                    } else if (!entry.online && now - entry.lastActiveAt > offlineRetentionMs
+                            && !stripe.changed.contains(e.getKey())) {
+                        it.remove();
+                    }
+                }
+
+                for (Long userId : stripe.changed) {
+                    Entry entry = stripe.entries.get(userId);
+                    if (entry != null) {
+                        changes.add(toDto(userId, entry.online, entry.lastActiveAt));
+                    }
+                }
+                stripe.changed.clear();
+            }
+        }
+
+        if (!changes.isEmpty()) {
+            publish(changes);
+        }
+    }
+
+    private void publish(List<PresenceStatusDto> changes) {
+        Map<Long, PresenceStatusDto> byUser = new HashMap<>();
+        for (PresenceStatusDto change : changes) {
+            byUser.put(change.getUserId(), change);
+        }
+
+        // Получатель -> изменения, которые ему интересны
+        Map<Long, List<PresenceStatusDto>> outbox = new HashMap<>();
+        List<Long> userIds = new ArrayList<>(byUser.keySet());
+
+        for (int from = 0; from < userIds.size(); from += AUDIENCE_CHUNK_SIZE) {
+            List<Long> chunk = userIds.subList(from, Math.min(from + AUDIENCE_CHUNK_SIZE, userIds.size()));
+
+            userContactService.getFriendIds(chunk).forEach((userId, friendIds) -> {
+                for (Long friendId : friendIds) {
+                    addToOutbox(outbox, friendId, byUser.get(userId));
+                }
+            });
+
+            for (Object[] row : chatRepository.findCoParticipantPairs(chunk, maxChatSizeForFanout)) {
+                addToOutbox(outbox, ((Number) row[1]).longValue(), byUser.get(((Number) row[0]).longValue()));
+            }
+        }
+
+        Instant timestamp = Instant.now();
+        outbox.forEach((recipientId, updates) -> messagingTemplate.convertAndSend(
+                "/topic/presence." + recipientId,
+                PresenceBatchDto.builder()
+                        .type(BATCH_TYPE)
+                        .updates(updates)
+                        .timestamp(timestamp)
+                        .build()
+        ));
+
+        log.debug("Статусы: изменений {}, получателей {}", changes.size(), outbox.size());
+    }
+
+    // Слать имеет смысл только тем, кто сейчас онлайн
+    private void addToOutbox(Map<Long, List<PresenceStatusDto>> outbox, Long recipientId, PresenceStatusDto change) {
+        if (change == null || recipientId.equals(change.getUserId())) {
+            return;
+        }
+        List<PresenceStatusDto> updates = outbox.get(recipientId);
+        if (updates == null) {
+            if (!isOnline(recipientId)) {
+                return;
+            }
+            updates = new ArrayList<>();
+            outbox.put(recipientId, updates);
+        }
+        if (!updates.contains(change)) {
+            updates.add(change);
+        }
+    }
+
+    private void update(Long userId, int sessionDelta) {
+        long now = System.currentTimeMillis();
+        Stripe stripe = stripeFor(userId);
+        synchronized (stripe) {
+            Entry entry = stripe.entries.computeIfAbsent(userId, id -> new Entry());
+            entry.sessions = Math.max(0, entry.sessions + sessionDelta);
+
+            if (sessionDelta >= 0) {
+                entry.lastActiveAt = now;
+                entry.activeUntil = now + heartbeatTimeoutMs;
+                entry.away = false;
+            } else if (entry.sessions == 0) {
+                // Отключение - не активность: ждем только короткое переподключение
+                entry.activeUntil = Math.min(entry.activeUntil, now + reconnectGraceMs);
+            }
+
+            refresh(stripe, userId, entry, now);
+        }
+    }
+
+    private void refresh(Stripe stripe, Long userId, Entry entry, long now) {
+        boolean online = computeOnline(entry, now);
+        if (online != entry.online) {
+            entry.online = online;
+            stripe.changed.add(userId);
+        }
+    }
+
+    private boolean computeOnline(Entry entry, long now) {
+        return !entry.away && (entry.sessions > 0 || now < entry.activeUntil);
+    }
+
+    private Long resolveUserId(AbstractSubProtocolEvent event) {
+        Principal principal = event.getUser();
+        if (principal == null) {
+            return null;
+        }
+        try {
+            return userIdentityCache.get(principal, sessionAttributes(event.getMessage())).getId();
+        } catch (Exception e) {
+            log.warn("Статусы: не удалось определить пользователя {}", principal.getName(), e);
+            return null;
+        }
+    }
+
+    // У CONNECTED атрибуты сессии лежат в исходном кадре CONNECT
+    private Map<String, Object> sessionAttributes(Message<?> message) {
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+        if (attributes == null
+                && message.getHeaders().get(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER) instanceof Message<?> connect) {
+            attributes = SimpMessageHeaderAccessor.getSessionAttributes(connect.getHeaders());
+        }
+        return attributes;
+    }
+
+    private PresenceStatusDto toDto(Long userId, boolean online, long lastActiveAt) {
+        return PresenceStatusDto.builder()
+                .type(UPDATE_TYPE)
+                .userId(userId)
+                .isOnline(online)
+                .lastSeenAt(lastActiveAt > 0 ? Instant.ofEpochMilli(lastActiveAt) : null)
+                .lastSeenFormatted(online ? "Онлайн" : "Не в сети")
+                .build();
+    }
+
+    private Stripe stripeFor(Long userId) {
+        return stripes[(int) Math.floorMod(userId, (long) stripes.length)];
+    }
+
+    private static class Stripe {
+        private final Map<Long, Entry> entries = new HashMap<>();
+        private final Set<Long> changed = new HashSet<>();
+    }
+
+    private static class Entry {
+        private int sessions;
+        private long lastActiveAt;
+        // До какого момента пользователь онлайн без открытых сессий
+        private long activeUntil;
+        // Клиент явно сообщил о выходе
+        private boolean away;
+        private boolean online;
+    }
+}
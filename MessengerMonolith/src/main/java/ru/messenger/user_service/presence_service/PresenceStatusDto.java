@@ -0,0 +1,20 @@
+package ru.messenger.user_service.presence_service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceStatusDto {
+    private String type; // USER_PRESENCE_UPDATE
+    private Long userId;
+    private Boolean isOnline;
+    private Instant lastSeenAt;
+    private String lastSeenFormatted;
+}
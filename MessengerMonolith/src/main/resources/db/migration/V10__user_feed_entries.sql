@@ -0,0 +1,39 @@
+-- ============================================
+-- Миграция V10: Готовые ленты пользователей (раскладка постов при публикации)
+-- ============================================
+
+-- Посты групп в лентах участников; created_at копируется из group_posts для keyset-пагинации
+CREATE TABLE user_feed_entries (
+                                   user_id BIGINT NOT NULL,
+                                   post_id BIGINT NOT NULL,
+                                   group_id BIGINT NOT NULL,
+                                   created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                                   PRIMARY KEY (user_id, post_id),
+                                   CONSTRAINT fk_user_feed_entries_user
+                                       FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+                                   CONSTRAINT fk_user_feed_entries_post
+                                       FOREIGN KEY (post_id) REFERENCES group_posts(id) ON DELETE CASCADE
+);
+
+-- Чтение ленты по курсору (created_at, post_id)
+CREATE INDEX idx_user_feed_entries_user_created ON user_feed_entries(user_id, created_at DESC, post_id DESC);
+
+-- Группы пользователя (лента, выход из группы)
+CREATE INDEX idx_group_members_user_status ON group_members(user_id, status);
+
+-- Последние опубликованные посты группы (большие группы читаются напрямую, заполнение ленты при вступлении)
+CREATE INDEX idx_group_posts_group_published ON group_posts(group_id, created_at DESC, id DESC)
+    WHERE status = 'PUBLISHED';
+
+-- Заполнение по существующим группам: пороги совпадают со значениями по умолчанию
+-- group.feed.fan-out-max-members (1000) и group.feed.max-length (500)
+INSERT INTO user_feed_entries (user_id, post_id, group_id, created_at)
+SELECT r.user_id, r.post_id, r.group_id, r.created_at
+FROM (SELECT m.user_id, p.id AS post_id, p.group_id, p.created_at,
+             ROW_NUMBER() OVER (PARTITION BY m.user_id ORDER BY p.created_at DESC, p.id DESC) AS rn
+      FROM group_members m
+               JOIN groups g ON g.id = m.group_id AND g.members_count <= 1000
+               JOIN group_posts p ON p.group_id = m.group_id
+          AND p.status = 'PUBLISHED' AND p.created_at IS NOT NULL
+      WHERE m.status = 'ACTIVE') r
+WHERE r.rn <= 500;
@@ -0,0 +1,7 @@
+-- ============================================
+-- Миграция V11: Посты автора по курсору
+-- ============================================
+
+-- Опубликованные посты автора от новых к старым (страница профиля, курсор (created_at, id))
+CREATE INDEX idx_group_posts_author_published ON group_posts(author_id, created_at DESC, id DESC)
+    WHERE status = 'PUBLISHED';
@@ -0,0 +1,49 @@
+-- ============================================
+-- Миграция V12: Ветки комментариев (корень ветки, глубина, число ответов)
+-- ============================================
+
+-- root_comment_id - корневой комментарий ветки (NULL у самих корней), depth - уровень вложенности,
+-- replies_count - число прямых ответов
+ALTER TABLE group_post_comments
+    ADD COLUMN root_comment_id BIGINT,
+    ADD COLUMN depth INTEGER NOT NULL DEFAULT 0,
+    ADD COLUMN replies_count INTEGER NOT NULL DEFAULT 0;
+
+ALTER TABLE group_post_comments
+    ADD CONSTRAINT fk_group_post_comments_root
+        FOREIGN KEY (root_comment_id) REFERENCES group_post_comments(id) ON DELETE CASCADE;
+
+-- Заполнение по существующему дереву
+WITH RECURSIVE tree AS (
+    SELECT id, id AS root_id, 0 AS depth
+    FROM group_post_comments
+    WHERE parent_comment_id IS NULL
+    UNION ALL
+    SELECT c.id, t.root_id, t.depth + 1
+    FROM group_post_comments c
+             JOIN tree t ON c.parent_comment_id = t.id
+)
+UPDATE group_post_comments c
+SET root_comment_id = t.root_id,
+    depth = t.depth
+FROM tree t
+WHERE c.id = t.id AND t.depth > 0;
+
+UPDATE group_post_comments c
+SET replies_count = r.cnt
+FROM (SELECT parent_comment_id, COUNT(*) AS cnt
+      FROM group_post_comments
+      WHERE parent_comment_id IS NOT NULL
+      GROUP BY parent_comment_id) r
+WHERE c.id = r.parent_comment_id;
+
+-- Корневые комментарии поста по порядку
+CREATE INDEX idx_group_post_comments_post_roots ON group_post_comments(post_id, created_at, id)
+    WHERE parent_comment_id IS NULL;
+
+-- Ответы ветки по порядку
+CREATE INDEX idx_group_post_comments_root ON group_post_comments(root_comment_id, created_at, id)
+    WHERE root_comment_id IS NOT NULL;
+
+-- Прямые ответы на комментарий
+CREATE INDEX idx_group_post_comments_parent ON group_post_comments(parent_comment_id);
@@ -0,0 +1,10 @@
+-- ============================================
+-- Миграция V14: Режим ленты группы (раскладка при публикации или чтение при запросе)
+-- ============================================
+
+-- TRUE - посты группы не раскладываются по лентам и читаются из group_posts при запросе.
+-- Флаг не снимается, даже если группа уменьшится: ее посты без записей в лентах иначе пропали бы
+ALTER TABLE groups ADD COLUMN feed_pull BOOLEAN NOT NULL DEFAULT FALSE;
+
+-- Порог совпадает со значением по умолчанию group.feed.fan-out-max-members (1000)
+UPDATE groups SET feed_pull = TRUE WHERE members_count > 1000;
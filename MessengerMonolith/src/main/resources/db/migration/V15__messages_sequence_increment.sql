@@ -0,0 +1,8 @@
+-- ============================================
+-- Миграция V15: messages_id_seq снова с шагом 1
+-- ============================================
+
+-- Блоки по 50 у каждого экземпляра и у пайплайна записи нарушали порядок id относительно
+-- порядка отправки, а на нем построены курсоры истории, отметки прочтения и last_message_id.
+-- Остальные последовательности из V5 остаются pooled.
+ALTER SEQUENCE messages_id_seq INCREMENT BY 1;
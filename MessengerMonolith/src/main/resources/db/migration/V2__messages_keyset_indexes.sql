@@ -0,0 +1,9 @@
+-- ============================================
+-- Миграция V2: Индексы для инкрементальной выборки сообщений
+-- ============================================
+
+-- Курсор по id внутри чата (messages/new?afterId=...)
+CREATE INDEX idx_messages_chat_id_id ON messages(chat_id, id);
+
+-- Выборка по времени внутри чата (messages/new?since=...)
+CREATE INDEX idx_messages_chat_id_sent_at ON messages(chat_id, sent_at, id);
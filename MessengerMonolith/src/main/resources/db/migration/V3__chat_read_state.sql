@@ -0,0 +1,37 @@
+-- ============================================
+-- Миграция V3: Состояние прочтения чатов (отметка + счетчик непрочитанных)
+-- ============================================
+
+CREATE TABLE chat_read_state (
+                                 id BIGSERIAL PRIMARY KEY,
+                                 chat_id BIGINT NOT NULL,
+                                 user_id BIGINT NOT NULL,
+                                 last_read_message_id BIGINT NOT NULL DEFAULT 0,
+                                 unread_count INTEGER NOT NULL DEFAULT 0,
+                                 updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+                                 CONSTRAINT uk_chat_read_state_chat_user UNIQUE (chat_id, user_id),
+                                 CONSTRAINT fk_chat_read_state_chat
+                                     FOREIGN KEY (chat_id) REFERENCES chats(id) ON DELETE CASCADE,
+                                 CONSTRAINT fk_chat_read_state_user
+                                     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- Бейджи непрочитанных для списка чатов пользователя
+CREATE INDEX idx_chat_read_state_user_id ON chat_read_state(user_id, chat_id);
+
+-- Перенос данных из message_read_by:
+-- отметка = последнее прочитанное сообщение, счетчик = чужие сообщения без отметки о прочтении
+INSERT INTO chat_read_state (chat_id, user_id, last_read_message_id, unread_count)
+SELECT cp.chat_id,
+       cp.user_id,
+       COALESCE((SELECT MAX(r.message_id)
+                 FROM message_read_by r
+                          JOIN messages m ON m.id = r.message_id
+                 WHERE m.chat_id = cp.chat_id AND r.user_id = cp.user_id), 0),
+       (SELECT COUNT(*)
+        FROM messages m
+        WHERE m.chat_id = cp.chat_id
+          AND m.sender_id <> cp.user_id
+          AND NOT EXISTS (SELECT 1 FROM message_read_by r
+                          WHERE r.message_id = m.id AND r.user_id = cp.user_id))
+FROM chat_participants cp;
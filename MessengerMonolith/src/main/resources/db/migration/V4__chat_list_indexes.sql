@@ -0,0 +1,9 @@
+-- ============================================
+-- Миграция V4: Индексы для списка чатов с курсором (updated_at, id)
+-- ============================================
+
+-- Чаты пользователя (PK chat_participants начинается с chat_id)
+CREATE INDEX idx_chat_participants_user_id ON chat_participants(user_id, chat_id);
+
+-- Сортировка и курсор списка чатов
+CREATE INDEX idx_chats_updated_at_id ON chats(updated_at DESC, id DESC);
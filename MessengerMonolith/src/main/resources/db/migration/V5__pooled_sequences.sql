@@ -0,0 +1,11 @@
+-- ============================================
+-- Миграция V5: Шаг последовательностей под pooled-генератор Hibernate
+-- ============================================
+
+-- Hibernate берет id блоками по 50 (allocationSize = 50), значение последовательности -
+-- верхняя граница блока. С IDENTITY пакетная вставка (jdbc.batch_size) не работала.
+ALTER SEQUENCE messages_id_seq INCREMENT BY 50;
+ALTER SEQUENCE attachments_id_seq INCREMENT BY 50;
+ALTER SEQUENCE group_members_id_seq INCREMENT BY 50;
+ALTER SEQUENCE group_post_likes_id_seq INCREMENT BY 50;
+ALTER SEQUENCE group_post_comments_id_seq INCREMENT BY 50;
@@ -0,0 +1,13 @@
+-- ============================================
+-- Миграция V6: Полнотекстовый поиск по сообщениям
+-- ============================================
+
+-- Поисковый вектор: русская морфология с большим весом, английская - с меньшим
+ALTER TABLE messages
+    ADD COLUMN content_tsv tsvector
+        GENERATED ALWAYS AS (
+            setweight(to_tsvector('russian', coalesce(content, '')), 'A') ||
+            setweight(to_tsvector('english', coalesce(content, '')), 'B')
+        ) STORED;
+
+CREATE INDEX idx_messages_content_tsv ON messages USING GIN (content_tsv);
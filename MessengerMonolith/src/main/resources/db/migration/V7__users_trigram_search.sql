@@ -0,0 +1,10 @@
+-- ============================================
+-- Миграция V7: Триграммные индексы для поиска пользователей
+-- ============================================
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Поиск по подстроке и префиксу: LOWER(x) LIKE '%q%' / 'q%'
+CREATE INDEX idx_users_login_trgm ON users USING GIN (LOWER(login) gin_trgm_ops);
+CREATE INDEX idx_users_username_trgm ON users USING GIN (LOWER(username) gin_trgm_ops);
+CREATE INDEX idx_users_email_trgm ON users USING GIN (LOWER(email) gin_trgm_ops);
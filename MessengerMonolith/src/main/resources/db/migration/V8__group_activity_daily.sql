@@ -0,0 +1,50 @@
+-- ============================================
+-- Миграция V8: Дневная статистика активности групп
+-- ============================================
+
+-- Счетчики по группе за сутки (UTC), пополняются периодическим сбросом из памяти
+CREATE TABLE group_activity_daily (
+                                      group_id BIGINT NOT NULL,
+                                      day DATE NOT NULL,
+                                      posts_count INTEGER NOT NULL DEFAULT 0,
+                                      comments_count INTEGER NOT NULL DEFAULT 0,
+                                      active_members INTEGER NOT NULL DEFAULT 0,
+                                      PRIMARY KEY (group_id, day),
+                                      CONSTRAINT fk_group_activity_daily_group
+                                          FOREIGN KEY (group_id) REFERENCES groups(id) ON DELETE CASCADE
+);
+
+-- Рейтинг групп за последние дни
+CREATE INDEX idx_group_activity_daily_day ON group_activity_daily(day, group_id);
+
+-- Кто уже учтен в active_members за сутки (чтобы считать уникальных без пересчета)
+CREATE TABLE group_activity_members (
+                                        group_id BIGINT NOT NULL,
+                                        day DATE NOT NULL,
+                                        user_id BIGINT NOT NULL,
+                                        PRIMARY KEY (group_id, day, user_id),
+                                        CONSTRAINT fk_group_activity_members_group
+                                            FOREIGN KEY (group_id) REFERENCES groups(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_group_activity_members_day ON group_activity_members(day);
+
+-- Заполнение по уже существующим постам и комментариям
+INSERT INTO group_activity_members (group_id, day, user_id)
+SELECT DISTINCT a.group_id, a.day, a.author_id
+FROM (SELECT p.group_id, CAST(p.created_at AT TIME ZONE 'UTC' AS DATE) AS day, p.author_id
+      FROM group_posts p
+      UNION ALL
+      SELECT p.group_id, CAST(c.created_at AT TIME ZONE 'UTC' AS DATE) AS day, c.author_id
+      FROM group_post_comments c
+               JOIN group_posts p ON p.id = c.post_id) a;
+
+INSERT INTO group_activity_daily (group_id, day, posts_count, comments_count, active_members)
+SELECT a.group_id, a.day, SUM(a.posts), SUM(a.comments), COUNT(DISTINCT a.author_id)
+FROM (SELECT p.group_id, CAST(p.created_at AT TIME ZONE 'UTC' AS DATE) AS day, 1 AS posts, 0 AS comments, p.author_id
+      FROM group_posts p
+      UNION ALL
+      SELECT p.group_id, CAST(c.created_at AT TIME ZONE 'UTC' AS DATE) AS day, 0, 1, c.author_id
+      FROM group_post_comments c
+               JOIN group_posts p ON p.id = c.post_id) a
+GROUP BY a.group_id, a.day;
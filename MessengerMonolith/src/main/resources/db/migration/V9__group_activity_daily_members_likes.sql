@@ -0,0 +1,24 @@
+-- ============================================
+-- Миграция V9: Лайки, вступления и выходы в дневной статистике групп
+-- ============================================
+
+ALTER TABLE group_activity_daily
+    ADD COLUMN likes_count INTEGER NOT NULL DEFAULT 0,
+    ADD COLUMN joins_count INTEGER NOT NULL DEFAULT 0,
+    ADD COLUMN leaves_count INTEGER NOT NULL DEFAULT 0;
+
+-- Заполнение по существующим лайкам
+INSERT INTO group_activity_daily (group_id, day, likes_count)
+SELECT p.group_id, CAST(l.created_at AT TIME ZONE 'UTC' AS DATE), COUNT(*)
+FROM group_post_likes l
+         JOIN group_posts p ON p.id = l.post_id
+GROUP BY p.group_id, CAST(l.created_at AT TIME ZONE 'UTC' AS DATE)
+ON CONFLICT (group_id, day) DO UPDATE SET likes_count = EXCLUDED.likes_count;
+
+-- Заполнение по датам вступления (история выходов не хранилась, выходы начинаются с нуля)
+INSERT INTO group_activity_daily (group_id, day, joins_count)
+SELECT m.group_id, CAST(m.joined_at AT TIME ZONE 'UTC' AS DATE), COUNT(*)
+FROM group_members m
+WHERE m.joined_at IS NOT NULL
+GROUP BY m.group_id, CAST(m.joined_at AT TIME ZONE 'UTC' AS DATE)
+ON CONFLICT (group_id, day) DO UPDATE SET joins_count = EXCLUDED.joins_count;
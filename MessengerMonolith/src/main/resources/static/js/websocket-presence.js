@@ -73,6 +73,9 @@ class PresenceWebSocket {
 
             if (data.type === 'USER_PRESENCE_UPDATE') {
                 this.updateContactStatus(data);
+            } else if (data.type === 'USER_PRESENCE_BATCH') {
+                // Сервер присылает изменения пачкой раз в такт
+                (data.updates || []).forEach(update => this.updateContactStatus(update));
             }
         } catch (error) {
             console.error('Ошибка обработки обновления статуса:', error);
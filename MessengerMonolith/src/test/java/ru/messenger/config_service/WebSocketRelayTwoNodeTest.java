@@ -0,0 +1,194 @@
+package ru.messenger.config_service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.stomp.*;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+import ru.messenger.user_service.domain.service.UserIdentity;
+import ru.messenger.user_service.domain.service.UserIdentityCache;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Два узла в режиме chat.broker.mode=relay с общим внешним STOMP-брокером:
+ * сообщение пользователю, отправленное на одном узле, доходит до его сессии на другом.
+ * Нужен запущенный брокер с STOMP (например, RabbitMQ с rabbitmq_stomp), адрес - в CHAT_BROKER_RELAY_HOST.
+ */
+@EnabledIfEnvironmentVariable(named = "CHAT_BROKER_RELAY_HOST", matches = ".+")
+class WebSocketRelayTwoNodeTest {
+
+    // Заголовок CONNECT, по которому тестовый узел назначает пользователя сессии
+    private static final String USER_HEADER = "test-user";
+
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+    private WebSocketStompClient stompClient;
+
+    @BeforeEach
+    void startNodes() {
+        nodeA = startNode();
+        nodeB = startNode();
+
+        stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+    }
+
+    @AfterEach
+    void stopNodes() {
+        if (stompClient != null) {
+            stompClient.stop();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+    }
+
+    @Test
+    void userDestinationReachesSessionOnOtherNode() throws Exception {
+        BlockingQueue<Map<?, ?>> received = new LinkedBlockingQueue<>();
+        StompSession session = connect(nodeB, "alice");
+        session.subscribe("/user/queue/acks", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((Map<?, ?>) payload);
+            }
+        });
+
+        // Подписка доходит до брокера асинхронно - отправляем, пока сообщение не придет
+        SimpMessagingTemplate template = nodeA.getBean(SimpMessagingTemplate.class);
+        Map<?, ?> ack = null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (ack == null && System.nanoTime() < deadline) {
+            template.convertAndSendToUser("alice", "/queue/acks", Map.of("messageId", 42));
+            ack = received.poll(500, TimeUnit.MILLISECONDS);
+        }
+
+        assertThat(ack).isNotNull();
+        assertThat(ack.get("messageId")).isEqualTo(42);
+        session.disconnect();
+    }
+
+    private ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(NodeConfig.class)
+                .web(WebApplicationType.SERVLET)
+                .run("--server.port=0",
+                        "--chat.broker.mode=relay",
+                        "--chat.broker.relay.host=" + System.getenv("CHAT_BROKER_RELAY_HOST"),
+                        "--chat.broker.relay.port=" + env("CHAT_BROKER_RELAY_PORT", "61613"),
+                        "--chat.broker.relay.login=" + env("CHAT_BROKER_RELAY_LOGIN", "guest"),
+                        "--chat.broker.relay.passcode=" + env("CHAT_BROKER_RELAY_PASSCODE", "guest"));
+    }
+
+    private StompSession connect(ConfigurableApplicationContext node, String login) throws Exception {
+        int port = ((ServletWebServerApplicationContext) node).getWebServer().getPort();
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add(USER_HEADER, login);
+        return stompClient.connectAsync("http://localhost:{port}/ws", new WebSocketHttpHeaders(),
+                        connectHeaders, new StompSessionHandlerAdapter() {
+                        }, port)
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? value : defaultValue;
+    }
+
+    /**
+     * Узел: настоящая конфигурация STOMP без БД и безопасности
+     */
+    @SpringBootConfiguration
+    @ImportAutoConfiguration({
+            ServletWebServerFactoryAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class,
+            WebMvcAutoConfiguration.class,
+            WebSocketServletAutoConfiguration.class,
+            JacksonAutoConfiguration.class
+    })
+    @Import({WebSocketConfig.class, StompIdentityInterceptor.class, WebSocketChannelMetrics.class,
+            TestPrincipalConfig.class})
+    static class NodeConfig {
+
+        @Bean
+        UserIdentityCache userIdentityCache() {
+            UserIdentityCache cache = mock(UserIdentityCache.class);
+            when(cache.get(anyString())).thenAnswer(invocation -> {
+                String login = invocation.getArgument(0);
+                return new UserIdentity((long) login.hashCode(), login, login);
+            });
+            return cache;
+        }
+    }
+
+    /**
+     * Пользователь сессии из заголовка CONNECT (вместо Spring Security), до StompIdentityInterceptor
+     */
+    @Configuration
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    static class TestPrincipalConfig implements WebSocketMessageBrokerConfigurer {
+
+        @Override
+        public void configureClientInboundChannel(ChannelRegistration registration) {
+            registration.interceptors(new ChannelInterceptor() {
+                @Override
+                public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                    StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                    if (accessor != null && accessor.getCommand() == StompCommand.CONNECT) {
+                        String login = accessor.getFirstNativeHeader(USER_HEADER);
+                        accessor.setUser(() -> login);
+                    }
+                    return message;
+                }
+            });
+        }
+    }
+}